@@ -0,0 +1,310 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/*
+ EngineCases 类：bench.EngineJmh 测量的全部引擎用例。
+ JMH 不接受默认包里的基准类，而有名字的包又不能引用默认包里的类，所以用例都在这里创建：
+ 每个用例是一个 LongSupplier，准备工作在创建时完成，每次 getAsLong() 执行一次被测操作并返回一个校验值。
+ 和 GameEngine 同在默认包，可以直接调用包内可见的 lockTetromino、detectCompleteLines 和 actuallyClearLines。
+ */
+public final class EngineCases {
+    private static final int WIDTH = GameEngine.DEFAULT_WIDTH;
+    private static final int HEIGHT = GameEngine.DEFAULT_HEIGHT;
+
+    private EngineCases() {
+    }
+
+    //按名字创建用例，名字与 EngineJmh 中的基准方法同名
+
+    public static LongSupplier create(String name) {
+        switch (name) {
+            case "isValidPosition": return isValidPosition();
+            case "rotate": return rotate();
+            case "restoreBoard": return new LockCases().restoreBoard();
+            case "lockTetromino": return new LockCases().lockTetromino();
+            case "lockTetrominoTetris": return new LockCases().lockTetrominoTetris();
+            case "detectCompleteLines": return new LockCases().detectCompleteLines();
+            case "actuallyClearLines": return new LockCases().actuallyClearLines();
+            case "boardClear": return boardClear();
+            case "fastDrop": return fastDrop();
+            case "scriptedGame": return scriptedGame();
+            case "snapshot": return snapshot();
+            case "boardFeatures": return boardFeatures();
+            case "featuresUpdate": return featuresUpdate();
+            default: throw new IllegalArgumentException("Unknown engine case: " + name);
+        }
+    }
+
+    // 碰撞检测：在半满的棋盘上轮流对每种方块、每个旋转状态、每一列做检测
+    private static LongSupplier isValidPosition() {
+        GameEngine engine = new GameEngine(PieceGenerator.sevenBag(1));
+        fillRandomRows(engine.getBoard(), HEIGHT / 2, 1);
+        return new LongSupplier() {
+            private int i = 0;
+
+            @Override
+            public long getAsLong() {
+                Tetromino t = Tetromino.of(i % Tetromino.TYPE_COUNT + 1, i >> 3);
+                int x = i % (WIDTH + 2) - 2;
+                int y = (i >> 2) % HEIGHT;
+                i = (i + 1) & 0xFFFF;
+                return engine.isValidPosition(x, y, t) ? 1 : 0;
+            }
+        };
+    }
+
+    // 旋转：查表得到下一个旋转状态
+    private static LongSupplier rotate() {
+        return new LongSupplier() {
+            private Tetromino t = Tetromino.createT();
+
+            @Override
+            public long getAsLong() {
+                t = t.rotate();
+                return t.getRotation();
+            }
+        };
+    }
+
+    /*
+     锁定和消行的三个引擎步骤。局面：底部 4 行只留最左一列空着。
+     会改变棋盘的用例每次先用 copyMasksFrom 恢复棋盘（颜色平面不恢复，不影响被测逻辑），
+     restoreBoard 单独测出这部分开销；actuallyClearLines 还包含一次 detectCompleteLines（消除前必须先标记满行）。
+     */
+    private static final class LockCases {
+        final GameEngine engine = new GameEngine(PieceGenerator.sevenBag(1));
+        final Board board = engine.getBoard();
+        final Board stack; // 底部 4 行只留最左一列空着
+        final Board full;  // stack 再竖着放入 I 方块，底部 4 行全满
+
+        final Tetromino square = Tetromino.of(Tetromino.TYPE_O, 0);
+        final int squareX = WIDTH / 2 - 1;
+        final int squareY;
+        final Tetromino vertical = Tetromino.of(Tetromino.TYPE_I, 1);
+        final int verticalX = -2; // 竖直的 I 方块占用形状的第 2 列
+        final int verticalY;
+
+        LockCases() {
+            stack = new Board(WIDTH, HEIGHT);
+            int[] fill = new int[4];
+            Arrays.fill(fill, ((1 << WIDTH) - 1) & ~1);
+            stack.place(fill, 0, HEIGHT - 4, 1);
+
+            // O 方块落在中间，不消行；I 方块落进最左一列后消 4 行
+            squareY = stack.dropDistance(square.getRowMasks(), squareX, 0);
+            verticalY = stack.dropDistance(vertical.getRowMasks(), verticalX, 0);
+
+            full = stack.copyMasks();
+            full.place(vertical.getRowMasks(), verticalX, verticalY, 1);
+            if (full.markFullRows(new long[(HEIGHT + 63) >>> 6]) != 4) {
+                throw new IllegalStateException("vertical I should fill 4 rows");
+            }
+            board.copyMasksFrom(full);
+        }
+
+        LongSupplier restoreBoard() {
+            return () -> {
+                board.copyMasksFrom(stack);
+                return board.getColumnTop(0);
+            };
+        }
+
+        // 锁定不消行：放置、T-spin 判定、检测满行、计分、生成下一个方块
+        LongSupplier lockTetromino() {
+            return () -> {
+                board.copyMasksFrom(stack);
+                engine.placeCurrent(square, squareX, squareY);
+                engine.lockTetromino();
+                return engine.getScore();
+            };
+        }
+
+        // 锁定后消 4 行：标记满行、计分和侵蚀格数，进入消除延迟
+        LongSupplier lockTetrominoTetris() {
+            return () -> {
+                board.copyMasksFrom(stack);
+                engine.placeCurrent(vertical, verticalX, verticalY);
+                engine.lockTetromino();
+                return engine.getScore();
+            };
+        }
+
+        // 只检测满行，不改变棋盘（棋盘在构造时设为 full）
+        LongSupplier detectCompleteLines() {
+            return engine::detectCompleteLines;
+        }
+
+        LongSupplier actuallyClearLines() {
+            return () -> {
+                board.copyMasksFrom(full);
+                engine.detectCompleteLines();
+                engine.actuallyClearLines();
+                return engine.getLines();
+            };
+        }
+    }
+
+    // 棋盘层面的放置和压实：底部 4 行只留最左一列空着，竖着放入 I 方块后一次消除 4 行
+    private static LongSupplier boardClear() {
+        Board board = new Board(WIDTH, HEIGHT);
+        Tetromino vertical = Tetromino.of(Tetromino.TYPE_I, 1);
+        int color = vertical.getColor().getRGB();
+        int[] fill = new int[4];
+        Arrays.fill(fill, ((1 << WIDTH) - 1) & ~1);
+        return () -> {
+            board.place(fill, 0, HEIGHT - 4, color);
+            board.place(vertical.getRowMasks(), -2, HEIGHT - 4, color);
+            return board.clearFullRows();
+        };
+    }
+
+    // 硬降：每次操作按下并松开一次 DROP，游戏结束后重新开始
+    private static LongSupplier fastDrop() {
+        GameEngine engine = new GameEngine(PieceGenerator.sevenBag(1));
+        return new LongSupplier() {
+            private long games = 0;
+
+            @Override
+            public long getAsLong() {
+                if (engine.isGameOver()) {
+                    engine.reset(++games);
+                }
+                engine.step(GameEngine.INPUT_DROP);
+                engine.step(GameEngine.INPUT_NONE);
+                return engine.getScore();
+            }
+        };
+    }
+
+    // 整局游戏：按预先生成的脚本输入逐帧推进，一次操作为一个逻辑帧
+    private static LongSupplier scriptedGame() {
+        int[] script = createScript(1 << 16, 42);
+        GameEngine engine = new GameEngine(PieceGenerator.sevenBag(42));
+        return new LongSupplier() {
+            private int position = 0;
+
+            @Override
+            public long getAsLong() {
+                if (engine.isGameOver()) {
+                    engine.reset(42);
+                    position = 0;
+                }
+                engine.step(script[position]);
+                position = (position + 1) & (script.length - 1);
+                return engine.getTickCount();
+            }
+        };
+    }
+
+    // 快照：把打到一半的局面写入缓冲区，再恢复到另一个引擎（AI 克隆局面的用法）
+    private static LongSupplier snapshot() {
+        int[] script = createScript(1 << 12, 7);
+        GameEngine engine = new GameEngine(PieceGenerator.sevenBag(7));
+        for (int i = 0; i < script.length && !engine.isGameOver(); i++) {
+            engine.step(script[i]);
+        }
+        GameEngine target = new GameEngine(PieceGenerator.sevenBag(0));
+        ByteBuffer buffer = ByteBuffer.allocate(GameSnapshot.maxBytes(WIDTH, HEIGHT));
+        return () -> {
+            buffer.clear();
+            GameSnapshot.write(engine, buffer);
+            buffer.flip();
+            GameSnapshot.restore(target, buffer);
+            return target.getScore() + buffer.limit();
+        };
+    }
+
+    // 局面特征：在半满的棋盘上完整计算一次全部特征（AI 每个候选落点评分一次）
+    private static LongSupplier boardFeatures() {
+        Board board = new Board(WIDTH, HEIGHT);
+        fillRandomRows(board, HEIGHT / 2, 3);
+        BoardFeatures features = new BoardFeatures();
+        return () -> features.compute(board).getHoles() + features.getWellSums();
+    }
+
+    /**
+      局面特征的增量计算：父局面算一次，之后对每种方块的每个落点从方块所在的行开始 update（AI 搜索最后一层的用法）。
+      创建时先逐个落点检查 update 的结果和完整计算一致，不一致就抛出异常。
+     */
+    private static LongSupplier featuresUpdate() {
+        Board board = new Board(WIDTH, HEIGHT);
+        fillRandomRows(board, HEIGHT / 2, 3);
+
+        List<Board> children = new ArrayList<>();
+        List<Integer> fromRows = new ArrayList<>();
+        for (int type = 1; type <= Tetromino.TYPE_COUNT; type++) {
+            for (AutoPlayer.Placement p : AutoPlayer.enumerate(board, type, 0, board.getWidth() / 2 - 1, 0)) {
+                Board child = board.copyMasks();
+                int lines = AutoPlayer.apply(child, p);
+                children.add(child);
+                fromRows.add(lines == 0 ? AutoPlayer.topRow(p) : 0);
+            }
+        }
+
+        BoardFeatures features = new BoardFeatures().compute(board);
+        BoardFeatures expected = new BoardFeatures();
+        for (int i = 0; i < children.size(); i++) {
+            features.update(children.get(i), fromRows.get(i));
+            expected.compute(children.get(i));
+            if (!sameFeatures(features, expected)) {
+                throw new IllegalStateException("BoardFeatures.update differs from compute for placement " + i);
+            }
+        }
+
+        Board[] childArray = children.toArray(new Board[0]);
+        int[] fromArray = fromRows.stream().mapToInt(Integer::intValue).toArray();
+        return new LongSupplier() {
+            private int next = 0;
+
+            @Override
+            public long getAsLong() {
+                long holes = features.update(childArray[next], fromArray[next]).getHoles();
+                if (++next == childArray.length) next = 0;
+                return holes;
+            }
+        };
+    }
+
+    private static boolean sameFeatures(BoardFeatures a, BoardFeatures b) {
+        for (int c = 0; c < a.getWidth(); c++) {
+            if (a.getColumnHeight(c) != b.getColumnHeight(c)) return false;
+        }
+        return a.getAggregateHeight() == b.getAggregateHeight() && a.getMaxHeight() == b.getMaxHeight()
+                && a.getBumpiness() == b.getBumpiness() && a.getHoles() == b.getHoles()
+                && a.getRowTransitions() == b.getRowTransitions()
+                && a.getColumnTransitions() == b.getColumnTransitions() && a.getWellSums() == b.getWellSums();
+    }
+
+    // 生成一段模拟玩家操作的输入：随机按住左右、偶尔旋转，每隔一段时间硬降
+    private static int[] createScript(int length, long seed) {
+        XorShiftRandom random = new XorShiftRandom(seed);
+        int[] script = new int[length];
+        int held = GameEngine.INPUT_NONE;
+        for (int i = 0; i < length; i++) {
+            if (i % 8 == 0) {
+                switch (random.nextInt(6)) {
+                    case 0: held = GameEngine.INPUT_LEFT; break;
+                    case 1: held = GameEngine.INPUT_RIGHT; break;
+                    case 2: held = GameEngine.INPUT_ROTATE; break;
+                    case 3: held = GameEngine.INPUT_DROP; break;
+                    default: held = GameEngine.INPUT_NONE; break;
+                }
+            }
+            script[i] = held;
+        }
+        return script;
+    }
+
+    // 随机填充底部若干行（每行至少留一个空格，避免被当作满行）
+    private static void fillRandomRows(Board board, int count, long seed) {
+        XorShiftRandom random = new XorShiftRandom(seed);
+        int[] row = new int[1];
+        for (int r = board.getHeight() - count; r < board.getHeight(); r++) {
+            row[0] = random.nextInt(1 << board.getWidth()) & ~(1 << random.nextInt(board.getWidth()));
+            board.place(row, 0, r, 1);
+        }
+    }
+}
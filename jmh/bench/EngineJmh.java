@@ -0,0 +1,109 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/*
+ EngineJmh 类：引擎热点路径的 JMH 基准测试，在优化引擎前后各跑一次，对比吞吐量和 -prof gc 的分配量即可发现回退。
+ 用例由默认包里的 EngineCases 按基准方法名创建（只在每轮开始前按类名调用一次），测量时是普通的接口调用。
+ lockTetromino、lockTetrominoTetris 和 actuallyClearLines 都包含一次棋盘恢复，对比时参考 restoreBoard；
+ actuallyClearLines 还包含一次 detectCompleteLines（消除前必须先标记满行）。
+
+ 用法：mvn -P jmh package && java -jar target/benchmarks.jar EngineJmh -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EngineJmh {
+    private LongSupplier op;
+
+    // 每轮重新创建用例，分数、行数和连击不会无限增长
+    @Setup(Level.Iteration)
+    public void createCase(BenchmarkParams params) throws ReflectiveOperationException {
+        String benchmark = params.getBenchmark();
+        String name = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+        op = (LongSupplier) Class.forName("EngineCases").getMethod("create", String.class).invoke(null, name);
+    }
+
+    @Benchmark
+    public void isValidPosition(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+
+    @Benchmark
+    public void rotate(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+
+    @Benchmark
+    public void restoreBoard(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+
+    @Benchmark
+    public void lockTetromino(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+
+    @Benchmark
+    public void lockTetrominoTetris(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+
+    @Benchmark
+    public void detectCompleteLines(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+
+    @Benchmark
+    public void actuallyClearLines(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+
+    @Benchmark
+    public void boardClear(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+
+    @Benchmark
+    public void fastDrop(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+
+    @Benchmark
+    public void scriptedGame(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+
+    @Benchmark
+    public void snapshot(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+
+    @Benchmark
+    public void boardFeatures(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+
+    @Benchmark
+    public void featuresUpdate(Blackhole bh) {
+        bh.consume(op.getAsLong());
+    }
+}
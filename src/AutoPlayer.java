@@ -0,0 +1,365 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ AutoPlayer 类：内置的 AI 玩家。
+ 每出现一个新方块，就枚举当前方块所有 (旋转, 列) 的落点，并结合预览队列向后搜索若干个方块，
+ 用启发式函数（总高度、空洞、凹凸度、消行数）给最终局面打分，选出最好的落点。
+ 第一层的各个候选落点在 ForkJoinPool 上并行评估；搜索深度按 CPU 核数自动调整。
+ 还可以暂存时，同样搜索换出来的方块（暂存的方块，或暂存区为空时的下一个方块），更好就先按暂存键。
+ 找到落点后，像真人一样逐帧“按键”：先旋转（顺时针、逆时针或半圈，取按键最少的方向），再左右移动，最后快速下落。
+ 重力很大时方块在执行途中就会下落：每下落一格都检查目标从当前位置是否仍然可达，不可达时从当前位置重新规划。
+ */
+public class AutoPlayer implements InputSource {
+    // 启发式权重（经典的遗传算法调参结果）
+    private static final double WEIGHT_HEIGHT = -0.510066;
+    private static final double WEIGHT_LINES = 0.760666;
+    private static final double WEIGHT_HOLES = -0.35663;
+    private static final double WEIGHT_BUMPINESS = -0.184483;
+
+    // 方块出现的位置（与 GameEngine 一致）
+    private static final int SPAWN_Y = 0;
+
+    private final int searchDepth; // 搜索的方块数：1 表示只看当前方块
+    private final ForkJoinPool pool; // 为 null 时单线程搜索
+
+    // 当前计划
+    private long plannedBoardVersion = -1;
+    private int targetRotation;
+    private int targetX;
+    private int targetY;  // 目标落点的行，用于检查是否仍然可达；没有落点时为 -1
+    private int checkedY; // 上次规划或检查可达性时方块所在的行
+    private boolean holdPlanned;
+    private int lastOutput = GameEngine.INPUT_NONE;
+
+    // 默认：按 CPU 核数决定搜索深度，使用公共 ForkJoinPool 并行
+    public AutoPlayer() {
+        this(defaultDepth(), ForkJoinPool.commonPool());
+    }
+
+    public AutoPlayer(int searchDepth, ForkJoinPool pool) {
+        if (searchDepth < 1 || searchDepth > PieceGenerator.MAX_LOOKAHEAD + 1) {
+            throw new IllegalArgumentException("searchDepth: " + searchDepth);
+        }
+        this.searchDepth = searchDepth;
+        this.pool = pool;
+    }
+
+    // 核数越多看得越远：每多一层，搜索量约乘以 40
+    public static int defaultDepth() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (cores >= 8) return 3;
+        if (cores >= 2) return 2;
+        return 1;
+    }
+
+    @Override
+    public int nextInput(GameEngine engine) {
+        if (engine.isGameOver() || engine.isClearing()) {
+            return release();
+        }
+
+        // 每次棋盘变化（即出现了新方块）都重新规划
+        if (engine.getBoardVersion() != plannedBoardVersion) {
+            plan(engine);
+            plannedBoardVersion = engine.getBoardVersion();
+        } else if (!holdPlanned && engine.getCurrentY() != checkedY) {
+            // 方块在执行计划的途中下落了，原来的路径可能已经被挡住
+            checkedY = engine.getCurrentY();
+            if (!isReachable(engine)) {
+                plan(engine);
+            }
+        }
+
+        // 按键需要“按下-松开”交替，引擎才会识别为新的一次按下
+        if (lastOutput != GameEngine.INPUT_NONE) {
+            return release();
+        }
+
+        Tetromino piece = engine.getCurrentTetromino();
+        int output;
+        if (holdPlanned) {
+            // 暂存后出现新方块，棋盘版本改变，下一帧重新规划
+            output = GameEngine.INPUT_HOLD;
+        } else if (piece.getRotation() != targetRotation) {
+            // 选按键最少的旋转方向
+            int turns = (targetRotation - piece.getRotation()) & (Tetromino.ROTATION_COUNT - 1);
+            output = turns == 1 ? GameEngine.INPUT_ROTATE
+                    : turns == 2 ? GameEngine.INPUT_ROTATE_180 : GameEngine.INPUT_ROTATE_CCW;
+        } else if (engine.getCurrentX() > targetX) {
+            output = GameEngine.INPUT_LEFT;
+        } else if (engine.getCurrentX() < targetX) {
+            output = GameEngine.INPUT_RIGHT;
+        } else {
+            output = GameEngine.INPUT_DROP;
+        }
+        lastOutput = output;
+        return output;
+    }
+
+    private int release() {
+        lastOutput = GameEngine.INPUT_NONE;
+        return GameEngine.INPUT_NONE;
+    }
+
+    // 目标落点从方块的当前位置出发是否仍然可达（按 enumerate 的路径：先旋转，再平移，最后落下）
+    private boolean isReachable(GameEngine engine) {
+        Tetromino piece = engine.getCurrentTetromino();
+        List<Placement> reachable = enumerate(engine.getBoard(), piece.getType(), piece.getRotation(),
+                engine.getCurrentX(), engine.getCurrentY());
+        for (Placement p : reachable) {
+            if (p.rotation == targetRotation && p.x == targetX && p.y == targetY) return true;
+        }
+        return false;
+    }
+
+    //为当前方块选出最好的落点，并决定是否先暂存
+
+    private void plan(GameEngine engine) {
+        Board board = engine.getBoard();
+        Tetromino piece = engine.getCurrentTetromino();
+        int startX = engine.getCurrentX();
+        holdPlanned = false;
+        checkedY = engine.getCurrentY();
+
+        // 预览队列中参与搜索的方块类型
+        int[] lookahead = new int[searchDepth - 1];
+        for (int i = 0; i < lookahead.length; i++) {
+            lookahead[i] = engine.getPreviewType(i);
+        }
+
+        Placement best = search(board, piece.getType(), piece.getRotation(), startX, engine.getCurrentY(), lookahead);
+        if (engine.canHold()) {
+            // 暂存区为空时换出下一个方块，后面的预览整体前移一个
+            int holdType = engine.getHoldType();
+            int[] afterHold = lookahead;
+            if (holdType == 0) {
+                holdType = engine.getPreviewType(0);
+                afterHold = new int[Math.min(lookahead.length, PieceGenerator.MAX_LOOKAHEAD - 1)];
+                for (int i = 0; i < afterHold.length; i++) {
+                    afterHold[i] = engine.getPreviewType(i + 1);
+                }
+            }
+            Placement alternative = search(board, holdType, 0, board.getWidth() / 2 - 1, SPAWN_Y, afterHold);
+            if (alternative != null && (best == null || alternative.score > best.score)) {
+                holdPlanned = true;
+                return;
+            }
+        }
+
+        if (best == null) {
+            targetRotation = piece.getRotation();
+            targetX = startX;
+            targetY = -1;
+            return;
+        }
+        targetRotation = best.rotation;
+        targetX = best.x;
+        targetY = best.y;
+    }
+
+    // 搜索一个方块从给定位置出发的最好落点，没有落点时返回 null
+    private Placement search(Board board, int type, int rotation, int x, int y, int[] lookahead) {
+        List<Placement> candidates = enumerate(board, type, rotation, x, y);
+        if (candidates.isEmpty()) return null;
+        if (pool != null && candidates.size() > 1 && lookahead.length > 0) {
+            return pool.invoke(new SearchTask(board, candidates, lookahead));
+        }
+        return new SearchTask(board, candidates, lookahead).compute();
+    }
+
+    /**
+      枚举一个方块所有可到达的落点：先在原地依次旋转，再在当前行平移，最后直接落到底。
+      中途被挡住的路径不计入。
+     */
+    static List<Placement> enumerate(Board board, int type, int startRotation, int startX, int startY) {
+        List<Placement> result = new ArrayList<>(Tetromino.ROTATION_COUNT * board.getWidth());
+        int distinctRotations = type == Tetromino.TYPE_O ? 1 : Tetromino.ROTATION_COUNT;
+
+        for (int turns = 0; turns < distinctRotations; turns++) {
+            Tetromino piece = Tetromino.of(type, startRotation + turns);
+            if (board.collides(piece.getRowMasks(), startX, startY)) break; // 旋转被挡住，后面的旋转也无法到达
+
+            int[] masks = piece.getRowMasks();
+            // 向左、向右扫描，直到被挡住
+            for (int dir = -1; dir <= 1; dir += 2) {
+                for (int x = dir < 0 ? startX : startX + 1; !board.collides(masks, x, startY); x += dir) {
+                    int y = startY + board.dropDistance(masks, x, startY);
+                    result.add(new Placement(piece.getRotation(), x, y, masks));
+                }
+            }
+        }
+        return result;
+    }
+
+    // 把方块放到棋盘副本上并消行，返回消除的行数
+    static int apply(Board board, Placement placement) {
+        board.place(placement.masks, placement.x, placement.y, 0);
+        return board.clearFullRows();
+    }
+
+    // 落点中方块最高一格所在的行（形状的顶部几行可能是空的）
+    static int topRow(Placement placement) {
+        int r = 0;
+        while (placement.masks[r] == 0) r++;
+        return placement.y + r;
+    }
+
+    //启发式评分：越高越好
+
+    static double evaluate(BoardFeatures features, int linesCleared) {
+        return WEIGHT_HEIGHT * features.getAggregateHeight() + WEIGHT_LINES * linesCleared
+                + WEIGHT_HOLES * features.getHoles() + WEIGHT_BUMPINESS * features.getBumpiness();
+    }
+
+    /**
+      从给定局面继续向后搜索 lookahead[depth..]，返回能达到的最高分。
+      最后一层先算出父局面的特征，各个落点只从方块所在的行开始增量计算。
+     */
+    static double searchBest(Board board, int[] lookahead, int depth, SearchBuffers buffers) {
+        if (depth >= lookahead.length) return Double.NEGATIVE_INFINITY;
+
+        int type = lookahead[depth];
+        int spawnX = board.getWidth() / 2 - 1;
+        List<Placement> candidates = enumerate(board, type, 0, spawnX, SPAWN_Y);
+
+        boolean last = depth + 1 >= lookahead.length;
+        BoardFeatures features = buffers.features(depth + 1);
+        if (last && !candidates.isEmpty()) {
+            features.compute(board);
+        }
+
+        double best = Double.NEGATIVE_INFINITY;
+        Board child = buffers.board(depth + 1, board);
+        for (Placement p : candidates) {
+            child.copyMasksFrom(board);
+            int lines = apply(child, p);
+            double score = last
+                    ? evaluate(features.update(child, lines == 0 ? topRow(p) : 0), lines)
+                    : searchBest(child, lookahead, depth + 1, buffers) + WEIGHT_LINES * lines;
+            if (score > best) best = score;
+        }
+        return best;
+    }
+
+    /*
+     每个线程自己的搜索缓冲区：每一层一个棋盘副本和一个特征提取器，在所有候选落点之间重复使用，
+     搜索过程中不再为棋盘和特征分配内存。
+     */
+    static final class SearchBuffers {
+        private static final int LEVELS = PieceGenerator.MAX_LOOKAHEAD + 2;
+
+        private final Board[] boards = new Board[LEVELS];
+        private final BoardFeatures[] features = new BoardFeatures[LEVELS];
+
+        // 第 level 层的棋盘，内容复制自 source（尺寸变化时重新分配）
+        Board board(int level, Board source) {
+            Board board = boards[level];
+            if (board == null || board.getWidth() != source.getWidth() || board.getHeight() != source.getHeight()) {
+                board = boards[level] = source.copyMasks();
+            } else {
+                board.copyMasksFrom(source);
+            }
+            return board;
+        }
+
+        BoardFeatures features(int level) {
+            if (features[level] == null) {
+                features[level] = new BoardFeatures();
+            }
+            return features[level];
+        }
+    }
+
+    private static final ThreadLocal<SearchBuffers> BUFFERS = ThreadLocal.withInitial(SearchBuffers::new);
+
+    // 落点：旋转状态、左上角位置和形状掩码；score 为搜索得到的分数
+    static final class Placement {
+        final int rotation;
+        final int x;
+        final int y;
+        final int[] masks;
+        double score;
+
+        Placement(int rotation, int x, int y, int[] masks) {
+            this.rotation = rotation;
+            this.x = x;
+            this.y = y;
+            this.masks = masks;
+        }
+    }
+
+    // 并行搜索任务：第一层每个候选落点一个子任务，子任务内部顺序搜索后面的方块
+    private static final class SearchTask extends RecursiveTask<Placement> {
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+        private final List<Placement> candidates;
+        private final int[] lookahead;
+
+        SearchTask(Board board, List<Placement> candidates, int[] lookahead) {
+            this.board = board;
+            this.candidates = candidates;
+            this.lookahead = lookahead;
+        }
+
+        @Override
+        protected Placement compute() {
+            if (candidates.size() == 1) {
+                scoreCandidate(candidates.get(0));
+                return candidates.get(0);
+            }
+            if (getPool() == null || lookahead.length == 0) {
+                // 不在线程池中（或搜索很浅）时顺序执行
+                for (Placement p : candidates) {
+                    scoreCandidate(p);
+                }
+            } else {
+                List<SearchTask> tasks = new ArrayList<>(candidates.size());
+                for (Placement p : candidates) {
+                    tasks.add(new SearchTask(board, List.of(p), lookahead));
+                }
+                invokeAll(tasks);
+            }
+
+            Placement best = candidates.get(0);
+            for (Placement p : candidates) {
+                if (p.score > best.score) best = p;
+            }
+            return best;
+        }
+
+        private void scoreCandidate(Placement p) {
+            SearchBuffers buffers = BUFFERS.get();
+            Board child = buffers.board(0, board);
+            BoardFeatures features = buffers.features(0);
+            int lines = apply(child, p);
+            if (lookahead.length == 0) {
+                p.score = evaluate(features.compute(child), lines);
+            } else {
+                double future = searchBest(child, lookahead, 0, buffers);
+                // 后续方块无处可放时，至少按当前局面打分
+                p.score = WEIGHT_LINES * lines
+                        + (future == Double.NEGATIVE_INFINITY ? evaluate(features.compute(child), 0) - 1000 : future);
+            }
+        }
+    }
+
+    // 无界面运行一局（用于演示、压测）：java AutoPlayer [种子] [搜索深度]
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.nanoTime();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : defaultDepth();
+
+        GameEngine engine = GameEngine.withConfiguredBoard(PieceGenerator.sevenBag(seed));
+        AutoPlayer player = new AutoPlayer(depth, ForkJoinPool.commonPool());
+        long start = System.nanoTime();
+        while (!engine.isGameOver()) {
+            engine.step(player.nextInput(engine));
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("seed=%d depth=%d score=%d lines=%d level=%d ticks=%d (%d ms)%n", seed, depth,
+                engine.getScore(), engine.getLines(), engine.getLevel(), engine.getTickCount(), millis);
+    }
+}
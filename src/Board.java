@@ -0,0 +1,507 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ Board 类：用位棋盘 (bitboard) 表示的游戏网格，尺寸在运行时指定。
+ 每一行是一段连续的 long 位串（stride 个 long），第 c 列对应第 (c + WALL) 位，
+ 两侧多余的位全部置 1 作为“墙壁”。所有行按行主序紧挨着存放在同一个 long[] 中，
+ 这样碰撞检测、满行检测、行移动都只需要对连续内存做几次按位运算，而不用逐格遍历，
+ 棋盘很大时（例如 64x256）扫描也是顺序访问，对缓存友好。
+ 颜色单独保存在同样按行主序排列的 int[] 平面中，只在绘制时使用。
+ 另外按列维护“天际线”（每列最高方块所在的行），锁定时增量更新、消行时重算，
+ 下落距离、幽灵方块和硬降落点都可以直接由它算出，不必逐行试探。
+ */
+public class Board {
+    // 左侧墙壁的位数：4x4 形状最多有 3 个空列，所以 currentX 最小可能为 -3
+    static final int WALL = 3;
+    public static final int MAX_WIDTH = 1024;
+    public static final int MAX_HEIGHT = 1024;
+    // 存档中一个棋盘最多使用的颜色种类（颜色编号占 1 个字节）
+    private static final int MAX_PALETTE = 255;
+
+    private final int width;
+    private final int height;
+    private final int stride; // 每行占用的 long 个数（两侧墙壁各至少 WALL 位）
+
+    private final long[] rows;    // 占用位串（含墙壁位），第 r 行为 rows[r * stride] 起的 stride 个 long
+    private final int[] colors;   // 颜色平面，colors[r * width + c]，0 表示空；只含位掩码的副本（AI 搜索用）为 null
+    private final int[] columnTops; // 每列最高方块所在的行，空列为 height
+
+    private final long[] emptyRow;       // 空行：只有墙壁位
+    private final long[] pendingColumns; // 重算天际线时使用的临时位集
+    private int[] palette; // 存档编码时使用的颜色表，第一次用到时才分配
+
+    public Board(int width, int height) {
+        this(width, height, true);
+    }
+
+    private Board(int width, int height, boolean withColors) {
+        if (width <= 0 || width > MAX_WIDTH || height <= 0 || height > MAX_HEIGHT) {
+            throw new IllegalArgumentException("Unsupported board size: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.stride = strideFor(width);
+        this.emptyRow = emptyRow(width);
+        this.pendingColumns = new long[stride];
+
+        this.rows = new long[height * stride];
+        this.colors = withColors ? new int[height * width] : null;
+        this.columnTops = new int[width];
+        clear();
+    }
+
+    // 宽度为 width 的棋盘每行占用的 long 个数
+    static int strideFor(int width) {
+        return (width + 2 * WALL + 63) >>> 6;
+    }
+
+    // 空行：第 WALL 位到第 WALL + width - 1 位为格子，其余都是墙壁
+    static long[] emptyRow(int width) {
+        int stride = strideFor(width);
+        long[] row = new long[stride];
+        for (int w = 0; w < stride; w++) {
+            int from = Math.max(WALL, w * 64) - w * 64;
+            int to = Math.min(WALL + width, w * 64 + 64) - w * 64;
+            long cells = from < to ? (to == 64 ? -1L : (1L << to) - 1) & -(1L << from) : 0;
+            row[w] = ~cells;
+        }
+        return row;
+    }
+
+    //复制一个只有位掩码、没有颜色平面的棋盘，供 AI 等只关心占用情况的模拟使用
+
+    public Board copyMasks() {
+        Board copy = new Board(width, height, false);
+        copy.copyMasksFrom(this);
+        return copy;
+    }
+
+    //从同样尺寸的棋盘复制位掩码（不复制颜色），用于重复利用搜索缓冲区
+
+    public void copyMasksFrom(Board other) {
+        System.arraycopy(other.rows, 0, rows, 0, rows.length);
+        System.arraycopy(other.columnTops, 0, columnTops, 0, width);
+    }
+
+    //清空整个棋盘
+
+    public void clear() {
+        for (int r = 0; r < height; r++) {
+            System.arraycopy(emptyRow, 0, rows, r * stride, stride);
+        }
+        if (colors != null) {
+            Arrays.fill(colors, 0);
+        }
+        Arrays.fill(columnTops, height);
+    }
+
+    /**
+      检测形状（按行位掩码表示，第 c 位对应形状的第 c 列）放在 (x, y) 时是否与墙壁、地板或已有方块重叠。
+      形状最多 4 位宽，平移后最多跨两个相邻的 long。
+     */
+    public boolean collides(int[] pieceRows, int x, int y) {
+        // 超出这个范围的 x，形状的任何一格都必然越界
+        if (x < -WALL || x >= width) return true;
+
+        int shift = x + WALL;
+        int word = shift >>> 6;
+        int offset = shift & 63;
+        for (int r = 0; r < pieceRows.length; r++) {
+            int mask = pieceRows[r];
+            if (mask == 0) continue;
+
+            int gridY = y + r;
+            if (gridY >= height) return true; // 碰到地板
+
+            long low = (long) mask << offset;
+            long high = offset == 0 ? 0 : (long) mask >>> (64 - offset);
+
+            // 顶部以上只有墙壁
+            long[] source = gridY >= 0 ? rows : emptyRow;
+            int base = gridY >= 0 ? gridY * stride + word : word;
+            if ((source[base] & low) != 0) return true;
+            if (high != 0 && (source[base + 1] & high) != 0) return true;
+        }
+        return false;
+    }
+
+    //把形状写入棋盘（锁定），越界的部分直接忽略
+
+    public void place(int[] pieceRows, int x, int y, int color) {
+        int shift = x + WALL;
+        if (shift < 0) return;
+        int word = shift >>> 6;
+        int offset = shift & 63;
+        for (int r = 0; r < pieceRows.length; r++) {
+            int mask = pieceRows[r];
+            int gridY = y + r;
+            if (mask == 0 || gridY < 0 || gridY >= height) continue;
+
+            int base = gridY * stride + word;
+            rows[base] |= ((long) mask << offset) & ~emptyRow[word];
+            if (offset != 0 && word + 1 < stride) {
+                rows[base + 1] |= ((long) mask >>> (64 - offset)) & ~emptyRow[word + 1];
+            }
+
+            // 颜色平面和天际线只需逐位更新，位数最多 4 个
+            int bits = mask;
+            while (bits != 0) {
+                int c = x + Integer.numberOfTrailingZeros(bits);
+                if (c >= 0 && c < width) {
+                    if (gridY < columnTops[c]) {
+                        columnTops[c] = gridY;
+                    }
+                    if (colors != null) {
+                        colors[gridY * width + c] = color;
+                    }
+                }
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    // 满行：所有位（格子和墙壁）都是 1
+    public boolean isRowFull(int row) {
+        int base = row * stride;
+        for (int w = 0; w < stride; w++) {
+            if (rows[base + w] != -1L) return false;
+        }
+        return true;
+    }
+
+    public boolean isRowEmpty(int row) {
+        int base = row * stride;
+        for (int w = 0; w < stride; w++) {
+            if (rows[base + w] != emptyRow[w]) return false;
+        }
+        return true;
+    }
+
+    //删除一行，并把上面的所有行整体下移一行
+
+    public void removeRow(int row) {
+        System.arraycopy(rows, 0, rows, stride, row * stride);
+        System.arraycopy(emptyRow, 0, rows, 0, stride);
+        if (colors != null) {
+            System.arraycopy(colors, 0, colors, width, row * width);
+            Arrays.fill(colors, 0, width, 0);
+        }
+        updateColumnTops(0);
+    }
+
+    /**
+      从底部插入 count 行垃圾行（对战模式）：每行除 holeColumn 列外全部填满，原有的行整体上移。
+      返回 true 表示顶部有方块被挤出了棋盘。
+     */
+    public boolean insertGarbage(int count, int holeColumn, int color) {
+        count = Math.min(count, height);
+        if (count <= 0) return false;
+
+        boolean overflow = false;
+        for (int row = 0; row < count; row++) {
+            if (!isRowEmpty(row)) {
+                overflow = true;
+                break;
+            }
+        }
+
+        System.arraycopy(rows, count * stride, rows, 0, (height - count) * stride);
+        if (colors != null) {
+            System.arraycopy(colors, count * width, colors, 0, (height - count) * width);
+        }
+
+        int holeBit = holeColumn + WALL;
+        for (int row = height - count; row < height; row++) {
+            int base = row * stride;
+            Arrays.fill(rows, base, base + stride, -1L);
+            rows[base + (holeBit >>> 6)] &= ~(1L << holeBit);
+            if (colors != null) {
+                Arrays.fill(colors, row * width, (row + 1) * width, color);
+                colors[row * width + holeColumn] = 0;
+            }
+        }
+        updateColumnTops(0);
+        return overflow;
+    }
+
+    /**
+      把所有满行记录到位集 marked 中（第 r 行对应 marked[r >> 6] 的第 (r & 63) 位），返回满行数。
+      marked 至少需要 (height + 63) / 64 个元素，调用前应清零。
+     */
+    public int markFullRows(long[] marked) {
+        int count = 0;
+        for (int row = 0; row < height; row++) {
+            if (isRowFull(row)) {
+                marked[row >>> 6] |= 1L << row;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    //删除位集 marked 中标记的所有行，其余行一次性向下压实，返回删除的行数
+
+    public int removeRows(long[] marked) {
+        return compact(marked);
+    }
+
+    //立即删除所有满行（不经过延迟消除），返回删除的行数
+
+    public int clearFullRows() {
+        return compact(null);
+    }
+
+    // 单遍压实：从下往上扫描，保留的行直接复制到写指针处，不分配任何对象。
+    // 天际线以上全是空行，不需要扫描和移动。marked 为 null 时删除所有满行
+    private int compact(long[] marked) {
+        int top = height;
+        for (int c = 0; c < width; c++) {
+            top = Math.min(top, columnTops[c]);
+        }
+
+        int write = height - 1;
+        for (int read = height - 1; read >= top; read--) {
+            boolean remove = marked != null
+                    ? (marked[read >>> 6] & (1L << read)) != 0
+                    : isRowFull(read);
+            if (remove) continue;
+
+            if (write != read) {
+                // 行很短（通常只有 1 个 long），直接逐字复制比 arraycopy 的调用开销更小
+                int from = read * stride;
+                int to = write * stride;
+                for (int w = 0; w < stride; w++) {
+                    rows[to + w] = rows[from + w];
+                }
+                if (colors != null) {
+                    System.arraycopy(colors, read * width, colors, write * width, width);
+                }
+            }
+            write--;
+        }
+
+        // top 到 write 之间的行已经空出（top 以上本来就是空行）
+        for (int row = top; row <= write; row++) {
+            int base = row * stride;
+            for (int w = 0; w < stride; w++) {
+                rows[base + w] = emptyRow[w];
+            }
+        }
+        int removed = write - top + 1;
+        if (removed > 0) {
+            if (colors != null) {
+                Arrays.fill(colors, top * width, (write + 1) * width, 0);
+            }
+            updateColumnTops(write + 1);
+        }
+        return removed;
+    }
+
+    // 消行后重算天际线：从 firstRow（其上都是空行）往下扫描，每行用位运算一次找出所有第一次遇到方块的列
+    private void updateColumnTops(int firstRow) {
+        Arrays.fill(columnTops, height);
+        int pending = width; // 还没找到最高方块的列数
+        for (int w = 0; w < stride; w++) {
+            pendingColumns[w] = ~emptyRow[w];
+        }
+        for (int row = firstRow; row < height && pending > 0; row++) {
+            int base = row * stride;
+            for (int w = 0; w < stride; w++) {
+                long hit = rows[base + w] & pendingColumns[w];
+                if (hit == 0) continue;
+                pendingColumns[w] &= ~hit;
+                pending -= Long.bitCount(hit);
+                while (hit != 0) {
+                    columnTops[w * 64 + Long.numberOfTrailingZeros(hit) - WALL] = row;
+                    hit &= hit - 1;
+                }
+            }
+        }
+    }
+
+    /**
+      计算形状从 (x, y) 能直接下落多少行。
+      形状每一列的最低格都在该列天际线之上时，直接由天际线算出；
+      只有形状已经钻到某列的悬空方块下面时，才退回逐行检测。
+      调用前 (x, y) 应当是合法位置。
+     */
+    public int dropDistance(int[] pieceRows, int x, int y) {
+        int distance = Integer.MAX_VALUE;
+        int seen = 0; // 已经处理过最低格的形状列
+        for (int r = pieceRows.length - 1; r >= 0; r--) {
+            int bits = pieceRows[r] & ~seen;
+            seen |= pieceRows[r];
+            while (bits != 0) {
+                int c = x + Integer.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+
+                int top = columnTops[c];
+                int cellRow = y + r;
+                if (cellRow >= top) {
+                    return slowDropDistance(pieceRows, x, y);
+                }
+                distance = Math.min(distance, top - 1 - cellRow);
+            }
+        }
+        return distance == Integer.MAX_VALUE ? 0 : distance;
+    }
+
+    // 逐行试探的下落距离（形状在悬空方块下方时使用）
+    private int slowDropDistance(int[] pieceRows, int x, int y) {
+        int distance = 0;
+        while (!collides(pieceRows, x, y + distance + 1)) {
+            distance++;
+        }
+        return distance;
+    }
+
+    /**
+      存档编码（见 GameSnapshot）：天际线最高行 top(2 字节)，top 以下各行的占用位逐格连续打包成字节，
+      然后是有无颜色的标志(1)、每个已占用格子的颜色编号(1)，最后是颜色表（个数(1) + 每种颜色的 ARGB(4)）。
+      top 以上全是空行，不写；10x18 的棋盘通常只要一两百字节。只含位掩码的棋盘没有编号，颜色表为空。
+     */
+    public void writeCells(ByteBuffer out) {
+        int top = height;
+        for (int c = 0; c < width; c++) {
+            top = Math.min(top, columnTops[c]);
+        }
+        out.putShort((short) top);
+
+        int bits = 0;
+        int bitCount = 0;
+        for (int r = top; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                if (isFilled(r, c)) bits |= 1 << bitCount;
+                if (++bitCount == 8) {
+                    out.put((byte) bits);
+                    bits = 0;
+                    bitCount = 0;
+                }
+            }
+        }
+        if (bitCount > 0) {
+            out.put((byte) bits);
+        }
+
+        int paletteSize = 0;
+        out.put((byte) (colors != null ? 1 : 0));
+        if (colors != null) {
+            if (palette == null) {
+                palette = new int[MAX_PALETTE];
+            }
+            // 颜色种类很少（7 种方块加垃圾行），线性查找即可
+            for (int r = top; r < height; r++) {
+                int base = r * width;
+                for (int c = 0; c < width; c++) {
+                    if (!isFilled(r, c)) continue;
+                    int color = colors[base + c];
+                    int code = 0;
+                    while (code < paletteSize && palette[code] != color) code++;
+                    if (code == paletteSize) {
+                        if (paletteSize == MAX_PALETTE) {
+                            throw new IllegalStateException("Too many distinct colors");
+                        }
+                        palette[paletteSize++] = color;
+                    }
+                    out.put((byte) code);
+                }
+            }
+        }
+        out.put((byte) paletteSize);
+        for (int i = 0; i < paletteSize; i++) {
+            out.putInt(palette[i]);
+        }
+    }
+
+    //从 writeCells 写出的数据恢复整个棋盘（尺寸必须相同）；数据不合法时抛出 IllegalArgumentException
+
+    public void readCells(ByteBuffer in) {
+        int top = in.getShort();
+        if (top < 0 || top > height) {
+            throw new IllegalArgumentException("Bad board top row: " + top);
+        }
+        clear();
+
+        int bits = 0;
+        int bitCount = 8;
+        for (int r = top; r < height; r++) {
+            int base = r * stride;
+            for (int c = 0; c < width; c++) {
+                if (bitCount == 8) {
+                    bits = in.get();
+                    bitCount = 0;
+                }
+                if ((bits & (1 << bitCount++)) != 0) {
+                    int bit = c + WALL;
+                    rows[base + (bit >>> 6)] |= 1L << bit;
+                }
+            }
+        }
+
+        // 先把编号暂存在颜色平面里，读到颜色表后再换成真正的颜色
+        boolean withColors = in.get() != 0;
+        if (withColors) {
+            for (int r = top; r < height; r++) {
+                int base = r * width;
+                for (int c = 0; c < width; c++) {
+                    if (!isFilled(r, c)) continue;
+                    int code = in.get() & 0xFF;
+                    if (colors != null) colors[base + c] = code;
+                }
+            }
+        }
+        int paletteSize = in.get() & 0xFF;
+        if (palette == null) {
+            palette = new int[MAX_PALETTE];
+        }
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = in.getInt();
+        }
+        if (withColors && colors != null) {
+            for (int r = top; r < height; r++) {
+                int base = r * width;
+                for (int c = 0; c < width; c++) {
+                    if (!isFilled(r, c)) continue;
+                    int code = colors[base + c];
+                    if (code >= paletteSize) {
+                        throw new IllegalArgumentException("Bad color code: " + code);
+                    }
+                    colors[base + c] = palette[code];
+                }
+            }
+        }
+        updateColumnTops(top);
+    }
+
+    // 第 col 列最高方块所在的行；空列返回 height
+    public int getColumnTop(int col) {
+        return columnTops[col];
+    }
+
+    public boolean isFilled(int row, int col) {
+        int bit = col + WALL;
+        return (rows[row * stride + (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    public int getColor(int row, int col) {
+        return colors[row * width + col];
+    }
+
+    // 内部的占用位串（BoardFeatures 直接按字扫描用），调用方不能修改
+    long[] rowWords() {
+        return rows;
+    }
+
+    int getStride() {
+        return stride;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,388 @@
+import java.util.Arrays;
+
+/*
+ BoardFeatures 类：局面特征提取，供 AI 评分和对局统计使用。一次从上往下扫描棋盘，同时算出：
+   列高       每列最高方块到底部的格数（空列为 0），以及总高度、最大高度和凹凸度（相邻列高差之和）
+   空洞       上方同一列有方块的空格数
+   行变换     每行从左墙到右墙，相邻两格“有/无方块”不同的次数（墙壁算有方块）
+   列变换     每列从上往下，相邻两格不同的次数（最高方块之上算空，地板算有方块）
+   井         两侧都是方块（或墙壁）的空格；同一列连续的井格依次记 1、2、3……，累加为“井深和”
+   侵蚀格数   一次锁定消除的行数 x 方块自身被消除的格数；它取决于锁定的方块和满行，不是棋盘本身的特征，
+              由静态方法 erodedCells 在消行之前计算（GameEngine 用它累计每局的侵蚀格数）
+ 只统计最高方块所在行及以下的行，上面的空行不计入行变换。
+
+ 扫描直接使用棋盘的位串（每行 stride 个 long），用 SWAR（一个 long 当作 64 个一位的通道）的方法
+ 一次处理一整行：空洞、变换都是几次按位运算加 bitCount，井深用按位切片的计数器（每一位平面一个 long）
+ 对整行同时加一。计算过程不分配对象，一个实例只能在一个线程中使用。
+ 没有使用 Vector API（jdk.incubator.vector）：项目以 Java 17 为目标，Vector API 在那里还是孵化模块，
+ 编译和每次启动都要加 --add-modules jdk.incubator.vector，启动时还会打印孵化模块的警告；
+ 而且宽度不超过 58 的棋盘（两侧各 WALL 位墙壁）一行只有一个 long，没有可以分到多个向量通道上的数据，
+ 按位运算已经一次处理了整行。
+
+ compute 会保存每一行扫描前的状态。在这个局面上放一个方块（没有消行）得到的子局面，只有方块所在的行
+ 及以下发生了变化，用 update 从那一行接着扫描即可，上面的行不用重算；保存的状态不变，
+ 所以 AI 搜索可以对同一个父局面的所有落点依次 update。
+ */
+public class BoardFeatures {
+    private static final int WALL = Board.WALL;
+
+    private int width;
+    private int height;
+    private int stride;
+    private int planes; // 井深计数器的位平面数，能表示到 height
+
+    private long[] cells;      // 每个字中属于格子（不是墙壁）的位
+    private long[] transMask;  // 行变换统计的位：从左墙最后一位到最后一个格子
+    private long[] emptyRow;   // 空行（只有墙壁位）
+    private long[] scratch;    // grid 和紧凑位串转换成棋盘布局后的行
+
+    // 扫描状态：上方已经出现过方块的列、上一行、井深计数器和上一行的井格
+    private long[] covered;
+    private long[] previous;
+    private long[] wellCount;
+    private long[] lastWell;
+
+    // 每行扫描前的状态和累计值，供 update 接着扫描
+    private long[] savedCovered;
+    private long[] savedPrevious;
+    private long[] savedWellCount;
+    private long[] savedLastWell;
+    private int[] savedHoles;
+    private int[] savedRowTransitions;
+    private int[] savedColumnTransitions;
+    private int[] savedWellSums;
+
+    private boolean computed; // 保存的状态是否属于当前尺寸的某个父局面
+    private int firstRow; // 父局面的起始行（最高方块所在的行）
+    private final int[] savedHeights = new int[Board.MAX_WIDTH]; // 父局面的列高
+
+    private final int[] heights = new int[Board.MAX_WIDTH];
+    private int aggregateHeight;
+    private int maxHeight;
+    private int bumpiness;
+    private int holes;
+    private int rowTransitions;
+    private int columnTransitions;
+    private int wellSums;
+
+    //计算棋盘的全部特征，并把它保存为之后 update 的父局面
+
+    public BoardFeatures compute(Board board) {
+        resize(board.getWidth(), board.getHeight());
+        int top = topRow(board);
+        scan(board.rowWords(), top, true, true);
+        saveParent(top);
+        return this;
+    }
+
+    /**
+      计算子局面 board 的特征：board 和上一次 compute 的父局面在 fromRow 行以上完全相同，
+      例如在父局面上放了一个方块（fromRow 为方块最高一格所在的行）而没有消行。
+      方块高出父局面最高行、或者消行后所有行都移动了（这时传入 fromRow = 0）时，对 board 完整扫描。
+      两种情况都不修改父局面保存的状态。
+     */
+    public BoardFeatures update(Board board, int fromRow) {
+        if (!computed || board.getWidth() != width || board.getHeight() != height) {
+            throw new IllegalStateException("update needs a parent of the same size; call compute first");
+        }
+        if (fromRow <= firstRow) {
+            scan(board.rowWords(), topRow(board), true, false);
+        } else {
+            scan(board.rowWords(), Math.min(fromRow, height - 1), false, false);
+        }
+        return this;
+    }
+
+    // 棋盘最高方块所在的行，空棋盘为 height
+    private static int topRow(Board board) {
+        int top = board.getHeight();
+        for (int c = 0; c < board.getWidth(); c++) {
+            top = Math.min(top, board.getColumnTop(c));
+        }
+        return top;
+    }
+
+    private void saveParent(int top) {
+        computed = true;
+        firstRow = top;
+        System.arraycopy(heights, 0, savedHeights, 0, width);
+    }
+
+    /**
+      按 grid[row][col] 表示的网格计算（非 0 为有方块），例如界面里的颜色网格。
+      网格会先转换成位串，只在尺寸变化时分配。
+     */
+    public BoardFeatures compute(int[][] grid) {
+        int rows = grid.length;
+        int columns = rows > 0 ? grid[0].length : 0;
+        resize(columns, rows);
+        int top = rows;
+        for (int r = 0; r < rows; r++) {
+            int base = r * stride;
+            System.arraycopy(emptyRow, 0, scratch, base, stride);
+            int[] line = grid[r];
+            boolean any = false;
+            for (int c = 0; c < columns; c++) {
+                if (line[c] != 0) {
+                    int bit = c + WALL;
+                    scratch[base + (bit >>> 6)] |= 1L << bit;
+                    any = true;
+                }
+            }
+            if (any && top == rows) top = r;
+        }
+        return computeScratch(top);
+    }
+
+    /**
+      按紧凑位串计算：packedRows[r] 的第 c 位对应第 r 行第 c 列（width 不超过 64），
+      例如 AI 或统计程序自己保存的局面。
+     */
+    public BoardFeatures compute(long[] packedRows, int width) {
+        if (width > 64) {
+            throw new IllegalArgumentException("Packed rows hold at most 64 columns: " + width);
+        }
+        int rows = packedRows.length;
+        resize(width, rows);
+        long valid = width == 64 ? -1L : (1L << width) - 1;
+        int top = rows;
+        for (int r = 0; r < rows; r++) {
+            long bits = packedRows[r] & valid;
+            int base = r * stride;
+            System.arraycopy(emptyRow, 0, scratch, base, stride);
+            scratch[base] |= bits << WALL;
+            if (stride > 1) {
+                scratch[base + 1] |= bits >>> (64 - WALL);
+            }
+            if (bits != 0 && top == rows) top = r;
+        }
+        return computeScratch(top);
+    }
+
+    private BoardFeatures computeScratch(int top) {
+        scan(scratch, top, true, true);
+        saveParent(top);
+        return this;
+    }
+
+    // 尺寸变化时重新分配所有缓冲区
+    private void resize(int width, int height) {
+        if (width == this.width && height == this.height && cells != null) return;
+        if (width <= 0 || width > Board.MAX_WIDTH || height <= 0 || height > Board.MAX_HEIGHT) {
+            throw new IllegalArgumentException("Unsupported board size: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.stride = Board.strideFor(width);
+        this.planes = 32 - Integer.numberOfLeadingZeros(height);
+
+        emptyRow = Board.emptyRow(width);
+        cells = new long[stride];
+        transMask = new long[stride];
+        for (int w = 0; w < stride; w++) {
+            cells[w] = ~emptyRow[w];
+        }
+        // 第 p 位表示第 p 位和第 p + 1 位之间的变换
+        for (int w = 0; w < stride; w++) {
+            transMask[w] = cells[w] | (cells[w] >>> 1) | (w + 1 < stride ? cells[w + 1] << 63 : 0);
+        }
+
+        scratch = new long[height * stride];
+        covered = new long[stride];
+        previous = new long[stride];
+        wellCount = new long[planes * stride];
+        lastWell = new long[stride];
+        savedCovered = new long[height * stride];
+        savedPrevious = new long[height * stride];
+        savedWellCount = new long[height * planes * stride];
+        savedLastWell = new long[height * stride];
+        savedHoles = new int[height];
+        savedRowTransitions = new int[height];
+        savedColumnTransitions = new int[height];
+        savedWellSums = new int[height];
+        computed = false;
+    }
+
+    /**
+      从 start 行扫描到底部：fresh 为 true 时从空状态开始，否则从父局面在 start 行保存的状态接着扫描；
+      save 为 true 时保存每一行扫描前的状态（只有 compute 需要）。
+     */
+    private void scan(long[] rows, int start, boolean fresh, boolean save) {
+        if (fresh) {
+            for (int w = 0; w < stride; w++) {
+                covered[w] = 0;
+                previous[w] = emptyRow[w];
+                lastWell[w] = 0;
+            }
+            Arrays.fill(wellCount, 0);
+            for (int c = 0; c < width; c++) {
+                heights[c] = 0;
+            }
+            holes = 0;
+            rowTransitions = 0;
+            columnTransitions = 0;
+            wellSums = 0;
+        } else {
+            System.arraycopy(savedCovered, start * stride, covered, 0, stride);
+            System.arraycopy(savedPrevious, start * stride, previous, 0, stride);
+            System.arraycopy(savedLastWell, start * stride, lastWell, 0, stride);
+            System.arraycopy(savedWellCount, start * planes * stride, wellCount, 0, planes * stride);
+            holes = savedHoles[start];
+            rowTransitions = savedRowTransitions[start];
+            columnTransitions = savedColumnTransitions[start];
+            wellSums = savedWellSums[start];
+            // start 行以上已有方块的列高度和父局面相同，其余的列要重新找
+            for (int c = 0; c < width; c++) {
+                int bit = c + WALL;
+                heights[c] = (covered[bit >>> 6] & (1L << bit)) != 0 ? savedHeights[c] : 0;
+            }
+        }
+
+        for (int r = start; r < height; r++) {
+            if (save) save(r);
+            int base = r * stride;
+            for (int w = 0; w < stride; w++) {
+                long row = rows[base + w];
+                // 超出这一行的位都当作墙壁
+                long left = w > 0 ? rows[base + w - 1] : -1L;
+                long right = w + 1 < stride ? rows[base + w + 1] : -1L;
+                long filled = row & cells[w];
+                long empty = ~row & cells[w];
+
+                holes += Long.bitCount(empty & covered[w]);
+
+                // 这一行第一次出现方块的列
+                long newColumns = filled & ~covered[w];
+                covered[w] |= filled;
+                while (newColumns != 0) {
+                    heights[w * 64 + Long.numberOfTrailingZeros(newColumns) - WALL] = height - r;
+                    newColumns &= newColumns - 1;
+                }
+
+                long shiftedRight = (row >>> 1) | (right << 63); // 第 p 位为原来的第 p + 1 位
+                long shiftedLeft = (row << 1) | (left >>> 63);   // 第 p 位为原来的第 p - 1 位
+                rowTransitions += Long.bitCount((row ^ shiftedRight) & transMask[w]);
+                columnTransitions += Long.bitCount((row ^ previous[w]) & cells[w]);
+                previous[w] = row;
+
+                // 井深计数器：井格加一，其余清零（按位切片的加法，进位逐个平面传递）
+                // 计数器不为 0 的位正好是上一行的井格；没有井延续下来时（最常见），计数器就是这一行的井格
+                long well = empty & shiftedLeft & shiftedRight;
+                if ((well & lastWell[w]) == 0) {
+                    if (lastWell[w] != 0) {
+                        for (int k = 1; k < planes; k++) {
+                            wellCount[k * stride + w] = 0;
+                        }
+                    }
+                    wellCount[w] = well;
+                    wellSums += Long.bitCount(well);
+                } else {
+                    long carry = well;
+                    int sum = 0;
+                    for (int k = 0; k < planes; k++) {
+                        int index = k * stride + w;
+                        long plane = wellCount[index];
+                        long next = (plane ^ carry) & well;
+                        carry &= plane;
+                        wellCount[index] = next;
+                        sum += Long.bitCount(next) << k;
+                    }
+                    wellSums += sum;
+                }
+                lastWell[w] = well;
+            }
+        }
+
+        // 最底行下面是地板：底行的每个空格都是一次列变换
+        for (int w = 0; w < stride; w++) {
+            columnTransitions += Long.bitCount(~previous[w] & cells[w]);
+        }
+
+        aggregateHeight = 0;
+        maxHeight = 0;
+        bumpiness = 0;
+        for (int c = 0; c < width; c++) {
+            int h = heights[c];
+            aggregateHeight += h;
+            if (h > maxHeight) maxHeight = h;
+            if (c > 0) bumpiness += Math.abs(h - heights[c - 1]);
+        }
+    }
+
+    // 保存扫描第 r 行之前的状态（通常只有几个 long，逐个复制比 arraycopy 的调用开销小）
+    private void save(int r) {
+        int base = r * stride;
+        for (int w = 0; w < stride; w++) {
+            savedCovered[base + w] = covered[w];
+            savedPrevious[base + w] = previous[w];
+            savedLastWell[base + w] = lastWell[w];
+        }
+        int wellBase = r * wellCount.length;
+        for (int i = 0; i < wellCount.length; i++) {
+            savedWellCount[wellBase + i] = wellCount[i];
+        }
+        savedHoles[r] = holes;
+        savedRowTransitions[r] = rowTransitions;
+        savedColumnTransitions[r] = columnTransitions;
+        savedWellSums[r] = wellSums;
+    }
+
+    /**
+      计算侵蚀格数：形状 pieceRows 放在第 y 行，marked 是 Board.markFullRows 标记的满行，
+      结果为满行数 x 方块在这些满行中的格数。需要在消行之前调用。
+     */
+    public static int erodedCells(int[] pieceRows, int y, long[] marked) {
+        int lines = 0;
+        for (long word : marked) {
+            lines += Long.bitCount(word);
+        }
+        int pieceCells = 0;
+        for (int r = 0; r < pieceRows.length; r++) {
+            int row = y + r;
+            if (row >= 0 && row < marked.length * 64 && (marked[row >>> 6] & (1L << row)) != 0) {
+                pieceCells += Integer.bitCount(pieceRows[r]);
+            }
+        }
+        return lines * pieceCells;
+    }
+
+    public int getColumnHeight(int col) {
+        return heights[col];
+    }
+
+    public int getAggregateHeight() {
+        return aggregateHeight;
+    }
+
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    public int getBumpiness() {
+        return bumpiness;
+    }
+
+    public int getHoles() {
+        return holes;
+    }
+
+    public int getRowTransitions() {
+        return rowTransitions;
+    }
+
+    public int getColumnTransitions() {
+        return columnTransitions;
+    }
+
+    public int getWellSums() {
+        return wellSums;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -2,12 +2,20 @@ import javax.swing.*;
 import java.awt.*;
 import javax.swing.border.LineBorder;
 import javax.swing.UIManager;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
 
 public class FrameTetris {
 
     // 定义统一的按钮尺寸
     private static final int BUTTON_WIDTH = 200;
     private static final int BUTTON_HEIGHT = 60;
+    private static final int MENU_SPACING = 16;
 
     private static JFrame frame;
     private static JPanel menuPanel;
@@ -44,8 +52,103 @@ public class FrameTetris {
 
     private static void startGame() {
         // 创建游戏面板，传入返回菜单的回调
-        GamePanel gamePanel = new GamePanel(() -> showMenu());
+        showGamePanel(new GamePanel(() -> showMenu()));
+    }
+
+    //本机对战：键盘玩家对 AI
+
+    private static void startVersus() {
+        VersusPanel versusPanel = new VersusPanel(() -> showMenu());
+        frame.getContentPane().removeAll();
+        frame.add(versusPanel);
+        frame.revalidate();
+        frame.repaint();
+        versusPanel.requestFocusInWindow();
+    }
+
+    //选择回放文件并按真实时间播放
+
+    private static void watchReplay() {
+        File dir = GamePanel.getReplayDirectory().toFile();
+        JFileChooser chooser = new JFileChooser(dir.isDirectory() ? dir : null);
+        chooser.setDialogTitle("Choose a replay");
+        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+
+        try {
+            ReplayPlayer replay = ReplayPlayer.load(chooser.getSelectedFile().toPath());
+            showGamePanel(new GamePanel(() -> showMenu(), replay));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, "Cannot open replay: " + e.getMessage(),
+                    "Replay", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    //读取存档并继续；存档是一次性的，读取后删除
+
+    private static void resumeGame() {
+        Path file = GamePanel.getSaveFile();
+        if (!Files.exists(file)) {
+            JOptionPane.showMessageDialog(frame, "There is no saved game.", "Resume",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
 
+        try {
+            GameEngine engine = GameSnapshot.load(file);
+            Files.deleteIfExists(file);
+            showGamePanel(new GamePanel(() -> showMenu(), engine));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, "Cannot open saved game: " + e.getMessage(),
+                    "Resume", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    //显示两种生成模式的前几名和累计统计
+
+    private static void showHighScores() {
+        StringBuilder html = new StringBuilder("<html>");
+        try {
+            StatsStore store = StatsStore.getDefault();
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+            String[] modeNames = {"Random", "7-Bag"};
+            for (int mode = 0; mode < StatsStore.MODE_COUNT; mode++) {
+                html.append("<font size='+1'><b>").append(modeNames[mode]).append("</b></font><br>");
+                html.append("Games: ").append(store.getGamesPlayed(mode))
+                        .append(" &nbsp; Lines: ").append(store.getTotalLines(mode))
+                        .append(" &nbsp; Time played: ")
+                        .append(RenderCache.formatClock(store.getTotalMillis(mode) / 1000)).append("<br>");
+
+                List<StatsStore.GameRecord> top = store.getTopScores(mode);
+                if (top.isEmpty()) {
+                    html.append("No games yet<br><br>");
+                    continue;
+                }
+                html.append("<table><tr><th>#</th><th>Score</th><th>Lines</th><th>Pieces</th>"
+                        + "<th>Time</th><th>Date</th></tr>");
+                for (int i = 0; i < top.size(); i++) {
+                    StatsStore.GameRecord record = top.get(i);
+                    html.append("<tr><td>").append(i + 1)
+                            .append("</td><td>").append(record.getScore())
+                            .append("</td><td>").append(record.getLines())
+                            .append("</td><td>").append(record.getPieces())
+                            .append("</td><td>").append(RenderCache.formatClock(record.getDurationMillis() / 1000))
+                            .append("</td><td>").append(dateFormat.format(new Date(record.getFinishedAt())))
+                            .append("</td></tr>");
+                }
+                html.append("</table><br>");
+            }
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, "Cannot open statistics: " + e.getMessage(),
+                    "High Scores", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        html.append("</html>");
+
+        UIManager.put("OptionPane.messageFont", new Font("SansSerif", Font.PLAIN, 22));
+        JOptionPane.showMessageDialog(frame, html.toString(), "High Scores", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    private static void showGamePanel(GamePanel gamePanel) {
         frame.getContentPane().removeAll();
         frame.add(gamePanel);
         frame.revalidate();
@@ -53,6 +156,11 @@ public class FrameTetris {
 
         // 给 GamePanel 焦点，使其能接收键盘输入
         gamePanel.requestFocusInWindow();
+
+        // 可选的主动渲染模式：-Dtetris.render=active，-Dtetris.fps=N 设置目标帧率（默认 0，跟随显示器刷新率）
+        if ("active".equalsIgnoreCase(System.getProperty("tetris.render"))) {
+            gamePanel.enableActiveRendering(frame, Integer.getInteger("tetris.fps", 0));
+        }
     }
 
     public static void main(String[] args){
@@ -78,23 +186,43 @@ public class FrameTetris {
 
         // 创建所有按钮
         JButton buttonPlay = createStyledButton("Play");
+        JButton buttonResume = createStyledButton("Resume");
+        JButton buttonReplay = createStyledButton("Replay");
+        JButton buttonDemo = createStyledButton("Demo");
+        JButton buttonVersus = createStyledButton("Versus");
+        JButton buttonScores = createStyledButton("High Scores");
         JButton buttonHowTo = createStyledButton("How to Play");
         JButton buttonCredits = createStyledButton("Credits");
         JButton buttonExit = createStyledButton("Exit");
 
         // 对齐方式
         buttonPlay.setAlignmentX(Component.CENTER_ALIGNMENT);
+        buttonResume.setAlignmentX(Component.CENTER_ALIGNMENT);
+        buttonReplay.setAlignmentX(Component.CENTER_ALIGNMENT);
+        buttonDemo.setAlignmentX(Component.CENTER_ALIGNMENT);
+        buttonVersus.setAlignmentX(Component.CENTER_ALIGNMENT);
+        buttonScores.setAlignmentX(Component.CENTER_ALIGNMENT);
         buttonHowTo.setAlignmentX(Component.CENTER_ALIGNMENT);
         buttonCredits.setAlignmentX(Component.CENTER_ALIGNMENT);
         buttonExit.setAlignmentX(Component.CENTER_ALIGNMENT);
 
-        // 将按钮和垂直间距添加到面板中
+        // 将按钮和垂直间距添加到面板中（按钮较多，间距比标题下方小一些）
         menuPanel.add(buttonPlay);
-        menuPanel.add(Box.createVerticalStrut(40));
+        menuPanel.add(Box.createVerticalStrut(MENU_SPACING));
+        menuPanel.add(buttonResume);
+        menuPanel.add(Box.createVerticalStrut(MENU_SPACING));
+        menuPanel.add(buttonReplay);
+        menuPanel.add(Box.createVerticalStrut(MENU_SPACING));
+        menuPanel.add(buttonDemo);
+        menuPanel.add(Box.createVerticalStrut(MENU_SPACING));
+        menuPanel.add(buttonVersus);
+        menuPanel.add(Box.createVerticalStrut(MENU_SPACING));
+        menuPanel.add(buttonScores);
+        menuPanel.add(Box.createVerticalStrut(MENU_SPACING));
         menuPanel.add(buttonHowTo);
-        menuPanel.add(Box.createVerticalStrut(40));
+        menuPanel.add(Box.createVerticalStrut(MENU_SPACING));
         menuPanel.add(buttonCredits);
-        menuPanel.add(Box.createVerticalStrut(40));
+        menuPanel.add(Box.createVerticalStrut(MENU_SPACING));
         menuPanel.add(buttonExit);
 
         menuPanel.add(Box.createVerticalGlue());
@@ -104,6 +232,21 @@ public class FrameTetris {
         // Play 按钮 - 启动游戏
         buttonPlay.addActionListener(e -> startGame());
 
+        // Resume 按钮 - 继续上次保存的游戏
+        buttonResume.addActionListener(e -> resumeGame());
+
+        // Replay 按钮 - 观看录像
+        buttonReplay.addActionListener(e -> watchReplay());
+
+        // Demo 按钮 - AI 自动演示
+        buttonDemo.addActionListener(e -> showGamePanel(new GamePanel(() -> showMenu(), new AutoPlayer())));
+
+        // Versus 按钮 - 和 AI 对战，消行会给对方送垃圾行
+        buttonVersus.addActionListener(e -> startVersus());
+
+        // High Scores 按钮 - 排行榜和累计统计
+        buttonScores.addActionListener(e -> showHighScores());
+
         // How to Play 按钮，html代码居然也可也用！！！！
         buttonHowTo.addActionListener(e -> {
             Font newFont = new Font("SansSerif", Font.PLAIN, 28);
@@ -112,17 +255,29 @@ public class FrameTetris {
                     "The game area is a grid where blocks fall from the top.<br><br>" +
                     "<b>Controls:</b><br>" +
                     "Move left/right: Use the left/right arrow keys<br>" +
-                    "Rotate: Press the up/down arrow keys<br>" +
+                    "Rotate clockwise: Press the up arrow key or X<br>" +
+                    "Rotate counter-clockwise: Press Z or Ctrl<br>" +
+                    "Rotate 180 degrees: Press A<br>" +
+                    "Soft drop: Hold the down arrow key<br>" +
                     "Quick drop: Press spacebar or Enter<br>" +
-                    "Return to menu: Press ESC<br><br>" +
+                    "Hold: Press C or Shift to swap the current block into the hold box (once per block)<br>" +
+                    "Pause: Press P<br>" +
+                    "Return to menu: Press ESC<br>" +
+                    "Save and quit: Press the Save button, then Resume from the menu later<br><br>" +
+                    "<b>Versus:</b><br>" +
+                    "Play against the computer side by side with the same controls. Line clears, T-spins and combos<br>" +
+                    "send garbage rows to the other board (the red bar shows what is about to rise). Last one standing wins.<br><br>" +
                     "<b>Clearing Lines:</b><br>" +
-                    "When a horizontal row is completely filled with blocks (no gaps), it disappears, and the blocks above it drop down.<br><br>" +
+                    "When a horizontal row is completely filled with blocks (no gaps), it disappears, and the blocks above it drop down.<br>" +
+                    "Clearing 1/2/3/4 rows scores 100/300/500/800 times the level. Consecutive clears add a combo bonus,<br>" +
+                    "and back-to-back Tetrises or T-spins (rotating a T block into a tight slot) score 1.5 times.<br><br>" +
                     "<b>Game Over:</b><br>" +
                     "The game ends when new blocks can no longer enter the game area (i.e., the stack reaches the top).<br><br>" +
                     "<b>Tips:</b><br>" +
                     "Keep the game area as flat as possible.<br>" +
                     "Avoid leaving gaps, as they make it harder to place future blocks.<br>" +
-                    "Use rotation to fit blocks into tight spaces." +
+                    "Use rotation to fit blocks into tight spaces: a block that cannot turn in place<br>" +
+                    "is kicked sideways or up into the nearest free position (SRS wall kicks)." +
                     "</html>";
             JOptionPane.showMessageDialog(frame, howToMessage);
         });
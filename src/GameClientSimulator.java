@@ -0,0 +1,311 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ GameClientSimulator 类：GameServer 的压力测试客户端。同时建立大量会话，每个会话像真人一样
+ 按实时节奏随机按键（只在按键状态变化时发送事件），接收增量并在本地还原棋盘和计数，
+ 游戏结束时用 END 中的最终结果和棋盘校验和核对本地还原的状态。
+ 最后输出完成的会话数、收到的消息和字节数、被拒绝的事件和不一致的会话数，以及服务器的堆内存占用。
+
+ 用法：java GameClientSimulator [会话数] [秒数] [主机] [端口]
+ 不指定主机时在同一个进程里启动一个本地服务器。
+ */
+public class GameClientSimulator {
+    // 每隔多少帧随机换一次按住的键
+    private static final int HOLD_TICKS = 8;
+    private static final int[] CHOICES = {
+            GameEngine.INPUT_LEFT, GameEngine.INPUT_RIGHT, GameEngine.INPUT_ROTATE,
+            GameEngine.INPUT_DROP, GameEngine.INPUT_HOLD, GameEngine.INPUT_NONE, GameEngine.INPUT_NONE
+    };
+
+    private final String host;
+    private final int port;
+    private final long durationNanos;
+
+    private final AtomicLong connected = new AtomicLong();
+    private final AtomicLong gamesOver = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong mismatched = new AtomicLong();
+    private final AtomicLong eventsSent = new AtomicLong();
+    private final AtomicLong deltasReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong rejects = new AtomicLong();
+
+    public GameClientSimulator(String host, int port, long durationNanos) {
+        this.host = host;
+        this.port = port;
+        this.durationNanos = durationNanos;
+    }
+
+    //运行 sessions 个并发会话，阻塞直到全部结束
+
+    public void run(int sessions) throws InterruptedException {
+        ExecutorService clients = GameServer.newSessionExecutor("tetris-sim-client-");
+        for (int i = 0; i < sessions; i++) {
+            long seed = i;
+            clients.execute(() -> {
+                try {
+                    new SimulatedClient(seed).play();
+                } catch (IOException e) {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(durationNanos + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS);
+    }
+
+    public void print(double seconds) {
+        System.out.printf("sessions        %d connected, %d game over, %d stopped at deadline, %d failed%n",
+                connected.get(), gamesOver.get(), timedOut.get(), failed.get());
+        System.out.printf("events sent     %d (%.0f /s)%n", eventsSent.get(), eventsSent.get() / seconds);
+        System.out.printf("deltas received %d (%.0f /s), %.1f KB/s%n", deltasReceived.get(),
+                deltasReceived.get() / seconds, bytesReceived.get() / 1024.0 / seconds);
+        System.out.printf("rejected events %d%n", rejects.get());
+        System.out.printf("mismatches      %d%n", mismatched.get());
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String host = args.length > 2 ? args[2] : null;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : GameServer.DEFAULT_PORT;
+
+        GameServer server = null;
+        if (host == null) {
+            server = GameServer.startLocal(sessions);
+            host = "127.0.0.1";
+            port = server.getPort();
+        }
+        System.out.printf("%d sessions for %d s against %s:%d (%s threads)%n", sessions, seconds, host, port,
+                GameServer.hasVirtualThreads() ? "virtual" : "platform");
+
+        GameClientSimulator simulator = new GameClientSimulator(host, port, TimeUnit.SECONDS.toNanos(seconds));
+        long start = System.nanoTime();
+        Thread sampler = null;
+        long[] peakHeap = new long[2];
+        if (server != null) {
+            GameServer local = server;
+            sampler = new Thread(() -> sampleHeap(local, peakHeap), "tetris-sim-sampler");
+            sampler.setDaemon(true);
+            sampler.start();
+        }
+        simulator.run(sessions);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        simulator.print(elapsed);
+        if (server != null) {
+            sampler.interrupt();
+            System.out.printf("server          %d finished, %d rejected; peak %d active sessions, heap %.1f MB"
+                            + " (%.1f KB per session incl. clients)%n", server.getFinishedSessions(),
+                    server.getRejectedEvents(), peakHeap[0], peakHeap[1] / 1048576.0,
+                    peakHeap[0] == 0 ? 0 : peakHeap[1] / 1024.0 / peakHeap[0]);
+            server.stop();
+        }
+    }
+
+    // 每秒采样一次活动会话数和已用堆内存，记录会话数最多时的值
+    private static void sampleHeap(GameServer server, long[] peak) {
+        Runtime runtime = Runtime.getRuntime();
+        try {
+            while (true) {
+                Thread.sleep(1000);
+                int active = server.getActiveSessions();
+                if (active > peak[0]) {
+                    System.gc();
+                    peak[0] = active;
+                    peak[1] = runtime.totalMemory() - runtime.freeMemory();
+                }
+            }
+        } catch (InterruptedException e) {
+            // 结束采样
+        }
+    }
+
+    /*
+     一个模拟客户端：实时随机按键，并用收到的增量维护一份棋盘和计数的副本。
+     */
+    private final class SimulatedClient {
+        private final XorShiftRandom random;
+        private final ByteBuffer in = ByteBuffer.allocate(8192);
+        private final byte[] event = new byte[6];
+
+        private InputStream input;
+        private OutputStream output;
+        private int width;
+        private byte[] cells;
+        private int score;
+        private int lines;
+        private int pieces;
+        private boolean ended = false;
+
+        SimulatedClient(long seed) {
+            this.random = new XorShiftRandom(seed ^ 0x5DEECE66DL);
+            in.flip();
+        }
+
+        void play() throws IOException {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port));
+                socket.setTcpNoDelay(true);
+                input = socket.getInputStream();
+                output = socket.getOutputStream();
+                connected.incrementAndGet();
+
+                output.write(new byte[]{GameServer.MSG_HELLO, GameServer.PROTOCOL_VERSION,
+                        PieceGenerator.MODE_SEVEN_BAG});
+                while (cells == null) {
+                    receive();
+                }
+
+                long start = System.nanoTime();
+                long deadline = start + durationNanos;
+                int held = GameEngine.INPUT_NONE;
+                long nextChange = 0;
+                while (!ended) {
+                    long now = System.nanoTime();
+                    if (now >= deadline) {
+                        timedOut.incrementAndGet();
+                        try {
+                            output.write(GameServer.MSG_BYE);
+                        } catch (IOException e) {
+                            // 服务器可能刚好结束了这一局
+                        }
+                        return;
+                    }
+                    long tick = (now - start) / GameEngine.TICK_NANOS;
+                    if (tick >= nextChange) {
+                        int next = CHOICES[random.nextInt(CHOICES.length)];
+                        if (next != held) {
+                            held = next;
+                            sendInput(tick, held);
+                        }
+                        nextChange = tick + HOLD_TICKS;
+                    }
+
+                    long wait = start + nextChange * GameEngine.TICK_NANOS - System.nanoTime();
+                    socket.setSoTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+                    try {
+                        receive();
+                    } catch (SocketTimeoutException e) {
+                        // 到了下一次换键的时间
+                    }
+                }
+                gamesOver.incrementAndGet();
+            }
+        }
+
+        private void sendInput(long tick, int held) throws IOException {
+            event[0] = GameServer.MSG_INPUT;
+            event[1] = (byte) (tick >>> 24);
+            event[2] = (byte) (tick >>> 16);
+            event[3] = (byte) (tick >>> 8);
+            event[4] = (byte) tick;
+            event[5] = (byte) held;
+            output.write(event);
+            eventsSent.incrementAndGet();
+        }
+
+        // 读取一次数据并处理其中所有完整的消息
+        private void receive() throws IOException {
+            in.compact();
+            int n;
+            try {
+                n = input.read(in.array(), in.position(), in.remaining());
+            } catch (SocketTimeoutException e) {
+                in.flip(); // 恢复读模式，未处理的数据留在缓冲区里
+                throw e;
+            }
+            if (n < 0) {
+                throw new IOException("Connection closed by server");
+            }
+            in.position(in.position() + n);
+            in.flip();
+            bytesReceived.addAndGet(n);
+
+            while (!ended) {
+                int length = messageLength();
+                if (length < 0 || in.remaining() < length) break;
+                handle();
+            }
+        }
+
+        // 缓冲区开头那条消息的长度；还不足以判断时返回 -1
+        private int messageLength() throws IOException {
+            if (!in.hasRemaining()) return -1;
+            int pos = in.position();
+            int type = in.get(pos);
+            if (type == GameServer.MSG_WELCOME) return 18;
+            if (type == GameServer.MSG_REJECT) return 6;
+            if (type == GameServer.MSG_END) return 21;
+            if (type != GameServer.MSG_DELTA) {
+                throw new IOException("Unexpected message: " + type);
+            }
+
+            if (in.remaining() < 6) return -1;
+            int flags = in.get(pos + 5);
+            int length = 6;
+            if ((flags & GameServer.DELTA_PIECE) != 0) length += 8;
+            if ((flags & GameServer.DELTA_STATS) != 0) length += 13;
+            if ((flags & GameServer.DELTA_ROWS) != 0) {
+                if (in.remaining() < length + 2) return -1;
+                length += 2 + in.getShort(pos + length) * (2 + width);
+            }
+            return length;
+        }
+
+        private void handle() {
+            int type = in.get();
+            if (type == GameServer.MSG_WELCOME) {
+                in.getInt();
+                in.getLong();
+                in.get();
+                width = in.getShort();
+                int height = in.getShort();
+                cells = new byte[width * height];
+            } else if (type == GameServer.MSG_REJECT) {
+                in.get();
+                in.getInt();
+                rejects.incrementAndGet();
+            } else if (type == GameServer.MSG_END) {
+                in.getInt();
+                // 最终结果必须和增量还原出的计数、棋盘一致
+                if (in.getInt() != score || in.getInt() != lines || in.getInt() != pieces
+                        || in.getInt() != Arrays.hashCode(cells)) {
+                    mismatched.incrementAndGet();
+                }
+                ended = true;
+            } else {
+                deltasReceived.incrementAndGet();
+                in.getInt();
+                int flags = in.get();
+                if ((flags & GameServer.DELTA_PIECE) != 0) {
+                    in.position(in.position() + 8);
+                }
+                if ((flags & GameServer.DELTA_STATS) != 0) {
+                    score = in.getInt();
+                    lines = in.getInt();
+                    in.get();
+                    pieces = in.getInt();
+                }
+                if ((flags & GameServer.DELTA_ROWS) != 0) {
+                    int count = in.getShort();
+                    for (int i = 0; i < count; i++) {
+                        int row = in.getShort();
+                        in.get(cells, row * width, width);
+                    }
+                }
+            }
+        }
+    }
+}
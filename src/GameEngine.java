@@ -0,0 +1,760 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ GameEngine 类：不依赖 Swing 的纯游戏逻辑核心。
+ 生成、移动、锁定、消行、计分全部在这里完成，时间以固定长度的逻辑帧 (tick) 计算，
+ 每调用一次 step(input) 前进一帧。同样的输入序列总会得到同样的结果，
+ 因此可以在没有显示器的环境中（测试、模拟、AI 训练、服务器校验）高速运行。
+ GamePanel 只负责把键盘输入交给引擎，并把引擎的状态画出来。
+ */
+public class GameEngine {
+    // 默认棋盘尺寸；运行时可以用 -Dtetris.board=宽x高 指定（见 withConfiguredBoard）
+    public static final int DEFAULT_WIDTH = 10;
+    public static final int DEFAULT_HEIGHT = 18;
+
+    // 逻辑帧率：每秒 60 帧
+    public static final int TICKS_PER_SECOND = 60;
+    public static final long TICK_NANOS = 1_000_000_000L / TICKS_PER_SECOND;
+
+    // 消除延迟（单位：帧），对应原来的 500 毫秒
+    private static final int CLEAR_DELAY_TICKS = 30;
+
+    // 重力曲线：每个等级每帧下落的格数，用 16.16 定点数表示（65536 = 每帧 1 格，即 1G）。
+    // 1 级为原来的每 0.5 秒一格，逐级加快，20 级达到 20G（每帧直接落到底）
+    private static final int GRAVITY_ONE = 65536;
+    private static final int[] GRAVITY_TABLE = {
+            2185, 2601, 3121, 3901, 4965, 6425, 8402, 10923, 14564, 19859,
+            27307, 36409, 54613, GRAVITY_ONE, 2 * GRAVITY_ONE, 3 * GRAVITY_ONE, 5 * GRAVITY_ONE,
+            10 * GRAVITY_ONE, 15 * GRAVITY_ONE, 20 * GRAVITY_ONE
+    };
+    public static final int MAX_LEVEL = GRAVITY_TABLE.length;
+    private static final int LINES_PER_LEVEL = 10;
+
+    // 锁定延迟：方块着地后 0.5 秒才锁定；着地期间移动或旋转成功会重新计时，但最多重置 15 次
+    private static final int LOCK_DELAY_TICKS = 30;
+    private static final int MAX_LOCK_RESETS = 15;
+
+    // 左右自动重复：按住超过 DAS 帧后，每 ARR 帧移动一格
+    private static final int DAS_TICKS = 10;
+    private static final int ARR_TICKS = 2;
+
+    // 输入位掩码：表示这一帧里“按住”的按键，引擎自己检测按下的瞬间
+    public static final int INPUT_NONE = 0;
+    public static final int INPUT_LEFT = 1;
+    public static final int INPUT_RIGHT = 1 << 1;
+    public static final int INPUT_ROTATE = 1 << 2;
+    public static final int INPUT_DROP = 1 << 3;
+    public static final int INPUT_HOLD = 1 << 4;
+    public static final int INPUT_SOFT_DROP = 1 << 5; // 按住时加速下落
+    public static final int INPUT_ROTATE_CCW = 1 << 6;
+    public static final int INPUT_ROTATE_180 = 1 << 7;
+    // 所有合法的输入位
+    public static final int INPUT_ALL = INPUT_LEFT | INPUT_RIGHT | INPUT_ROTATE | INPUT_DROP | INPUT_HOLD
+            | INPUT_SOFT_DROP | INPUT_ROTATE_CCW | INPUT_ROTATE_180;
+
+    // SRS 踢墙表中 T-spin 的最后一个测试（TST 踢墙），用它旋转进去的 Mini 升级为完整 T-spin
+    private static final int T_SPIN_FINAL_KICK = 4;
+
+    // 软降时至少每两帧下落一格
+    private static final int SOFT_DROP_GRAVITY = GRAVITY_ONE / 2;
+
+    // 游戏状态
+    private final Board board;
+    private final PieceGenerator generator; // 每局独立的方块序列生成器
+    private Tetromino currentTetromino;
+    private int currentX;
+    private int currentY;
+    private boolean gameOver = false;
+    private int score = 0;
+    private int lines = 0; // 累计消除行数，决定等级
+    private int piecesPlaced = 0; // 已锁定的方块数
+    private int erodedCells = 0; // 每次消行的侵蚀格数之和（见 BoardFeatures.erodedCells），供统计使用
+    private final Scoring scoring = new Scoring(); // 连击、背靠背等计分状态
+    private boolean lastMoveRotation = false; // 最后一次成功的操作是否为旋转，用于判定 T-spin
+    private boolean lastRotationFinalKick = false; // 那次旋转是否用到了最后一个踢墙测试
+
+    // 暂存区：方块类型（0 表示空），每个方块落下之前只能暂存一次
+    private int holdType = 0;
+    private boolean holdUsed = false;
+
+    // 时间状态（单位：帧）
+    private long tickCount = 0; // 已执行的 step 次数（含消除延迟），回放以它为时间轴
+    private long elapsedTicks = 0; // 累计游戏时间，消除延迟和游戏结束后不计时
+    private int gravityAccumulator = 0; // 16.16 定点数，满 1 格就下落一格
+
+    // 锁定延迟状态
+    private int lockDelayCounter = 0;
+    private int lockResets = 0;
+    private int lowestY = 0; // 当前方块到达过的最低行，到达更低的行时重置次数清零
+
+    // 输入状态
+    private int previousInput = INPUT_NONE; // 上一次的按键状态，用于检测按下的瞬间
+    private int shiftDirection = 0; // 当前自动重复的方向：-1 左，1 右，0 无
+    private int dasCounter = 0;
+
+    // 对战模式：对手送来、尚未插入棋盘的垃圾行数。下一个方块锁定且没有消行时从底部插入
+    private static final int GARBAGE_COLOR = 0xFF808080;
+    private static final long GARBAGE_SALT = 0x6A09E667F3BCC909L;
+    private final XorShiftRandom garbageRandom = new XorShiftRandom(0); // 决定垃圾行缺口所在的列
+    private int pendingGarbage = 0;
+
+    // 可选的回放录制器：记录每一次按键状态变化
+    private ReplayWriter recorder;
+
+    // 延迟消除状态
+    private boolean isClearing = false; // 标记是否正在执行延迟清除（暂停主游戏）
+    private int clearDelayCounter = 0;
+    private final long[] linesToClear; // 待清除行的位集
+    private int linesToClearCount = 0;
+
+    // 状态版本号：任何可见状态改变时加一，界面据此决定是否需要重绘
+    private long version = 0;
+    // 棋盘版本号：只在锁定、消行、生成新方块或重置时加一，界面据此决定是否重建棋盘缓存
+    private long boardVersion = 0;
+
+    // 默认使用纯随机模式，种子取自当前时间
+    public GameEngine() {
+        this(PieceGenerator.random(System.nanoTime()));
+    }
+
+    public GameEngine(PieceGenerator generator) {
+        this(generator, DEFAULT_WIDTH, DEFAULT_HEIGHT);
+    }
+
+    public GameEngine(PieceGenerator generator, int width, int height) {
+        this.board = new Board(width, height);
+        this.linesToClear = new long[(height + 63) >>> 6];
+        this.generator = generator;
+        reset(generator.getSeed());
+    }
+
+    //按 -Dtetris.board=宽x高（例如 64x256）创建引擎，未设置时使用默认尺寸
+
+    public static GameEngine withConfiguredBoard(PieceGenerator generator) {
+        String size = System.getProperty("tetris.board");
+        if (size == null) {
+            return new GameEngine(generator);
+        }
+        int separator = size.toLowerCase().indexOf('x');
+        if (separator < 0) {
+            throw new IllegalArgumentException("tetris.board must look like 10x18: " + size);
+        }
+        int width = Integer.parseInt(size.substring(0, separator).trim());
+        int height = Integer.parseInt(size.substring(separator + 1).trim());
+        return new GameEngine(generator, width, height);
+    }
+
+    //用新的随机种子重新开始一局
+
+    public void reset() {
+        reset(System.nanoTime());
+    }
+
+    //用指定种子重置为一局新游戏，相同种子和相同输入总会重现同一局
+
+    public void reset(long seed) {
+        board.clear();
+        score = 0;
+        lines = 0;
+        piecesPlaced = 0;
+        erodedCells = 0;
+        scoring.reset();
+        lastMoveRotation = false;
+        lastRotationFinalKick = false;
+        gameOver = false;
+        pendingGarbage = 0;
+        garbageRandom.setSeed(seed ^ GARBAGE_SALT);
+        holdType = 0;
+        holdUsed = false;
+
+        // 创建当前方块，下一个方块由生成器的预览队列提供
+        generator.reset(seed);
+        currentTetromino = Tetromino.of(generator.next(), 0);
+
+        currentX = board.getWidth() / 2 - 1;
+        currentY = 0;
+
+        // 检查初始方块是否合法
+        if (!isValidPosition(currentX, currentY, currentTetromino)) {
+            gameOver = true;
+        }
+
+        tickCount = 0;
+        elapsedTicks = 0;
+        resetPieceTimers();
+        previousInput = INPUT_NONE;
+        shiftDirection = 0;
+        dasCounter = 0;
+        isClearing = false;
+        clearDelayCounter = 0;
+        Arrays.fill(linesToClear, 0);
+        linesToClearCount = 0;
+        version++;
+        boardVersion++;
+    }
+
+    /**
+      前进一个逻辑帧：先处理本帧的按键状态，再处理自动重复、重力下落、锁定延迟或消除延迟。
+      input 为这一帧按住的按键（INPUT_* 的组合）。
+     */
+    public void step(int input) {
+        if (gameOver) return;
+
+        // step(input) 必须与“先 applyInput(input) 再 step”完全等价，回放才能逐帧重现
+        applyInput(input);
+        if (gameOver) return;
+
+        tickCount++;
+
+        // 按住左右键时累计 DAS（消除延迟期间也继续累计）
+        if (shiftDirection != 0) {
+            dasCounter++;
+        }
+
+        if (isClearing) {
+            // 延迟结束后执行实际消除，然后生成新方块
+            if (++clearDelayCounter >= CLEAR_DELAY_TICKS) {
+                actuallyClearLines();
+                isClearing = false;
+                spawnNewTetromino();
+                version++;
+                boardVersion++;
+            }
+            return;
+        }
+
+        elapsedTicks++;
+        autoShift();
+        applyGravity();
+    }
+
+    /**
+      立即处理按键状态的变化，不推进时间：刚按下的键立即生效，并更新自动重复的状态。
+      界面在键盘事件到来时调用它，之后每帧再用同样的按键状态调用 step()。
+     */
+    public void applyInput(int input) {
+        if (input != previousInput && recorder != null) {
+            recorder.record(tickCount, input);
+        }
+        int pressed = input & ~previousInput;
+        previousInput = input;
+
+        // 自动重复方向：新按下的方向优先；松开当前方向时切换到仍按住的另一方向
+        if ((pressed & INPUT_LEFT) != 0) {
+            shiftDirection = -1;
+            dasCounter = 0;
+        } else if ((pressed & INPUT_RIGHT) != 0) {
+            shiftDirection = 1;
+            dasCounter = 0;
+        } else if (shiftDirection == -1 && (input & INPUT_LEFT) == 0) {
+            shiftDirection = (input & INPUT_RIGHT) != 0 ? 1 : 0;
+            dasCounter = 0;
+        } else if (shiftDirection == 1 && (input & INPUT_RIGHT) == 0) {
+            shiftDirection = (input & INPUT_LEFT) != 0 ? -1 : 0;
+            dasCounter = 0;
+        }
+
+        if (pressed == INPUT_NONE) return;
+
+        if ((pressed & INPUT_HOLD) != 0) hold();
+        if ((pressed & INPUT_LEFT) != 0) moveLeft();
+        if ((pressed & INPUT_RIGHT) != 0) moveRight();
+        if ((pressed & INPUT_ROTATE) != 0) rotate(1);
+        if ((pressed & INPUT_ROTATE_CCW) != 0) rotate(3);
+        if ((pressed & INPUT_ROTATE_180) != 0) rotate(2);
+        if ((pressed & INPUT_DROP) != 0) fastDrop();
+    }
+
+    // DAS/ARR：按住超过 DAS_TICKS 帧后，每 ARR_TICKS 帧移动一格
+    private void autoShift() {
+        if (shiftDirection == 0 || dasCounter < DAS_TICKS) return;
+        if ((dasCounter - DAS_TICKS) % ARR_TICKS != 0) return;
+
+        if (shiftDirection < 0) {
+            moveLeft();
+        } else {
+            moveRight();
+        }
+    }
+
+    // 按当前等级的重力累积下落距离（按住软降时加速，每格得分）；着地后改为累计锁定延迟
+    private void applyGravity() {
+        boolean softDrop = (previousInput & INPUT_SOFT_DROP) != 0;
+        int gravity = GRAVITY_TABLE[getLevel() - 1];
+        gravityAccumulator += softDrop ? Math.max(gravity, SOFT_DROP_GRAVITY) : gravity;
+        while (gravityAccumulator >= GRAVITY_ONE) {
+            gravityAccumulator -= GRAVITY_ONE;
+            if (!moveDown()) {
+                gravityAccumulator = 0;
+                break;
+            }
+            if (softDrop) {
+                score += Scoring.dropPoints(1, false);
+            }
+        }
+
+        if (isValidPosition(currentX, currentY + 1, currentTetromino)) {
+            lockDelayCounter = 0;
+        } else if (++lockDelayCounter >= LOCK_DELAY_TICKS) {
+            lockTetromino();
+        }
+    }
+
+    // 新方块出现时重置重力和锁定延迟
+    private void resetPieceTimers() {
+        gravityAccumulator = 0;
+        lockDelayCounter = 0;
+        lockResets = 0;
+        lowestY = currentY;
+    }
+
+    // 着地时移动或旋转成功：重新开始锁定计时（次数有限，防止无限拖延）
+    private void onPieceMoved() {
+        lastMoveRotation = false;
+        if (currentY > lowestY) {
+            lowestY = currentY;
+            lockResets = 0;
+        }
+        if (lockDelayCounter > 0 && lockResets < MAX_LOCK_RESETS) {
+            lockDelayCounter = 0;
+            lockResets++;
+        }
+        version++;
+    }
+
+    //把当前方块直接摆到 (x, y) 并退出消除延迟，供基准测试在同一个局面上反复锁定（包内可见）
+
+    void placeCurrent(Tetromino tetromino, int x, int y) {
+        currentTetromino = tetromino;
+        currentX = x;
+        currentY = y;
+        lastMoveRotation = false;
+        isClearing = false;
+        clearDelayCounter = 0;
+        gameOver = false;
+    }
+
+    private void spawnNewTetromino() {
+        spawn(generator.next());
+        holdUsed = false;
+    }
+
+    private void spawn(int type) {
+        currentTetromino = Tetromino.of(type, 0);
+
+        currentX = board.getWidth() / 2 - 1;
+        currentY = 0;
+        lastMoveRotation = false;
+        resetPieceTimers();
+
+        if (!isValidPosition(currentX, currentY, currentTetromino)) {
+            gameOver = true;
+        }
+    }
+
+    public boolean isValidPosition(int x, int y, Tetromino tetromino) {
+        return !board.collides(tetromino.getRowMasks(), x, y);
+    }
+
+    //方块锁定逻辑：检测到满行时进入延迟消除状态（包内可见，供 jmh/ 下的基准测试直接调用）
+
+    void lockTetromino() {
+        GameEvents.LockEvent event = new GameEvents.LockEvent();
+        event.begin();
+
+        int spin = detectTSpin();
+        int colorValue = currentTetromino.getColor().getRGB();
+        board.place(currentTetromino.getRowMasks(), currentX, currentY, colorValue);
+        piecesPlaced++;
+
+        // 满行在锁定时已经标记好，得分直接按这次的结果增量计算（等级按消行前计算）
+        int linesCleared = detectCompleteLines();
+        score += scoring.onLock(linesCleared, spin, getLevel());
+        if (linesCleared > 0) {
+            erodedCells += BoardFeatures.erodedCells(currentTetromino.getRowMasks(), currentY, linesToClear);
+        }
+        if (event.shouldCommit()) {
+            event.pieceType = currentTetromino.getType();
+            event.fullRows = linesCleared;
+            event.commit();
+        }
+
+        if (linesCleared > 0) {
+            // 暂停下落，等待延迟结束
+            isClearing = true;
+            clearDelayCounter = 0;
+        } else {
+            // 没有满行则先插入待处理的垃圾行，再生成下一个方块
+            if (pendingGarbage > 0) {
+                insertPendingGarbage();
+            }
+            if (!gameOver) {
+                spawnNewTetromino();
+            }
+        }
+        version++;
+        boardVersion++;
+    }
+
+    /**
+      T-spin 判定（三角规则）：T 方块最后一次成功的操作是旋转，且 3x3 边框的四个角中至少三个被占据
+      （墙和底部也算占据）。T 朝向一侧的两个角都被占据，或者旋转用到了最后一个踢墙测试时为完整 T-spin，否则为 Mini。
+     */
+    private int detectTSpin() {
+        if (currentTetromino.getType() != Tetromino.TYPE_T || !lastMoveRotation) return Scoring.SPIN_NONE;
+
+        boolean topLeft = isBlocked(currentY, currentX);
+        boolean topRight = isBlocked(currentY, currentX + 2);
+        boolean bottomLeft = isBlocked(currentY + 2, currentX);
+        boolean bottomRight = isBlocked(currentY + 2, currentX + 2);
+        int corners = (topLeft ? 1 : 0) + (topRight ? 1 : 0) + (bottomLeft ? 1 : 0) + (bottomRight ? 1 : 0);
+        if (corners < 3) return Scoring.SPIN_NONE;
+
+        // 旋转状态 0 朝上，之后每次顺时针转 90 度
+        boolean front;
+        switch (currentTetromino.getRotation()) {
+            case 0: front = topLeft && topRight; break;
+            case 1: front = topRight && bottomRight; break;
+            case 2: front = bottomLeft && bottomRight; break;
+            default: front = topLeft && bottomLeft; break;
+        }
+        return front || lastRotationFinalKick ? Scoring.SPIN_FULL : Scoring.SPIN_MINI;
+    }
+
+    // 棋盘外（两侧和底部）视为占据，顶部以上视为空
+    private boolean isBlocked(int row, int col) {
+        if (col < 0 || col >= board.getWidth() || row >= board.getHeight()) return true;
+        return row >= 0 && board.isFilled(row, col);
+    }
+
+    //只检测满行，并把满行记录到 linesToClear 位集中（包内可见，同上）
+
+    int detectCompleteLines() {
+        Arrays.fill(linesToClear, 0);
+        linesToClearCount = board.markFullRows(linesToClear);
+        return linesToClearCount;
+    }
+
+    //实际执行消除操作（得分已在锁定时计算，包内可见，同上）
+
+    void actuallyClearLines() {
+        if (linesToClearCount == 0) return;
+
+        GameEvents.ClearEvent event = new GameEvents.ClearEvent();
+        event.begin();
+
+        // 一次压实删除所有标记的行，上方的行整体下移
+        int cleared = board.removeRows(linesToClear);
+        if (event.shouldCommit()) {
+            event.lines = cleared;
+            event.commit();
+        }
+        lines += cleared;
+
+        Arrays.fill(linesToClear, 0);
+        linesToClearCount = 0;
+    }
+
+    // 插入全部待处理的垃圾行（同一批垃圾行的缺口在同一列）；有方块被挤出顶部时游戏结束
+    private void insertPendingGarbage() {
+        int hole = garbageRandom.nextInt(board.getWidth());
+        if (board.insertGarbage(pendingGarbage, hole, GARBAGE_COLOR)) {
+            gameOver = true;
+        }
+        pendingGarbage = 0;
+    }
+
+    /**
+      对战模式：收到对手送来的 lines 行垃圾。不会立即插入，而是等到下一个方块锁定且没有消行时插入，
+      在此之前自己消行可以抵消（见 cancelGarbage）。
+     */
+    public void addGarbage(int lines) {
+        if (gameOver || lines <= 0) return;
+        pendingGarbage = Math.min(board.getHeight(), pendingGarbage + lines);
+        version++;
+    }
+
+    //用 attack 行攻击抵消自己待处理的垃圾行，返回抵消后剩余、应发给对手的行数
+
+    public int cancelGarbage(int attack) {
+        int cancelled = Math.min(attack, pendingGarbage);
+        pendingGarbage -= cancelled;
+        return attack - cancelled;
+    }
+
+    // 下落一格；着地时返回 false（是否锁定由锁定延迟决定）
+    private boolean moveDown() {
+        if (gameOver || isClearing) return false; // 消除延迟期间不能移动
+
+        if (isValidPosition(currentX, currentY + 1, currentTetromino)) {
+            currentY++;
+            onPieceMoved();
+            return true;
+        }
+        return false;
+    }
+    private void moveLeft() {
+        if (gameOver || isClearing) return;
+        if (isValidPosition(currentX - 1, currentY, currentTetromino)) {
+            currentX--;
+            onPieceMoved();
+        }
+    }
+    private void moveRight() {
+        if (gameOver || isClearing) return;
+        if (isValidPosition(currentX + 1, currentY, currentTetromino)) {
+            currentX++;
+            onPieceMoved();
+        }
+    }
+    // 旋转 turns 次（1 顺时针、2 半圈、3 逆时针）：按 SRS 踢墙表依次测试偏移，第一个不重叠的位置生效
+    private void rotate(int turns) {
+        if (gameOver || isClearing) return;
+        Tetromino rotated = currentTetromino.rotate(turns);
+        int[] kicks = currentTetromino.getKicks(turns);
+        int[] masks = rotated.getRowMasks();
+        for (int i = 0; i < kicks.length; i += 2) {
+            int x = currentX + kicks[i];
+            int y = currentY + kicks[i + 1];
+            if (!board.collides(masks, x, y)) {
+                currentTetromino = rotated;
+                currentX = x;
+                currentY = y;
+                onPieceMoved();
+                lastMoveRotation = true;
+                lastRotationFinalKick = i / 2 == T_SPIN_FINAL_KICK && turns != 2;
+                return;
+            }
+        }
+    }
+    // 暂存：当前方块放入暂存区，换出暂存的方块（暂存区为空时取下一个方块），从顶部重新出现
+    private void hold() {
+        if (gameOver || isClearing || holdUsed) return;
+        int type = currentTetromino.getType();
+        if (holdType == 0) {
+            spawn(generator.next());
+        } else {
+            spawn(holdType);
+        }
+        holdType = type;
+        holdUsed = true;
+        version++;
+        boardVersion++;
+    }
+
+    private void fastDrop() {
+        if (gameOver || isClearing) return;
+        int distance = board.dropDistance(currentTetromino.getRowMasks(), currentX, currentY);
+        if (distance > 0) {
+            currentY += distance;
+            lastMoveRotation = false;
+            score += Scoring.dropPoints(distance, true);
+        }
+        lockTetromino();
+    }
+
+    /**
+      存档：按固定顺序写出继续这一局所需的全部状态，包括计时器、锁定延迟、自动重复、
+      消除延迟、垃圾行和生成器的随机数状态，恢复后与不中断地继续运行逐帧完全一致。
+      待消除的行不用写：消除延迟期间棋盘不变，恢复时重新检测满行即可。文件头见 GameSnapshot。
+     */
+    void writeState(ByteBuffer out) {
+        out.put((byte) ((gameOver ? 1 : 0) | (isClearing ? 2 : 0) | (holdUsed ? 4 : 0)
+                | (lastMoveRotation ? 8 : 0) | (lastRotationFinalKick ? 16 : 0)));
+        out.put((byte) currentTetromino.getType());
+        out.put((byte) currentTetromino.getRotation());
+        out.putShort((short) currentX);
+        out.putShort((short) currentY);
+        out.putInt(score);
+        out.putInt(lines);
+        out.putInt(piecesPlaced);
+        out.putLong(tickCount);
+        out.putLong(elapsedTicks);
+        out.putInt(gravityAccumulator);
+        out.putShort((short) lockDelayCounter);
+        out.put((byte) lockResets);
+        out.putShort((short) lowestY);
+        out.put((byte) previousInput);
+        out.put((byte) shiftDirection);
+        out.putInt(dasCounter);
+        out.putShort((short) clearDelayCounter);
+        out.putShort((short) pendingGarbage);
+        out.putLong(garbageRandom.getState());
+        out.put((byte) holdType);
+        scoring.writeState(out);
+        out.putInt(erodedCells);
+        generator.writeState(out);
+        board.writeCells(out);
+    }
+
+    //从 writeState 写出的数据恢复（棋盘尺寸和生成模式必须相同）；数据不合法时抛出 IllegalArgumentException
+
+    void readState(ByteBuffer in) {
+        int flags = in.get();
+        gameOver = (flags & 1) != 0;
+        isClearing = (flags & 2) != 0;
+        holdUsed = (flags & 4) != 0;
+        lastMoveRotation = (flags & 8) != 0;
+        lastRotationFinalKick = (flags & 16) != 0;
+        int type = PieceGenerator.checkType(in.get());
+        currentTetromino = Tetromino.of(type, in.get());
+        currentX = in.getShort();
+        currentY = in.getShort();
+        score = in.getInt();
+        lines = in.getInt();
+        piecesPlaced = in.getInt();
+        tickCount = in.getLong();
+        elapsedTicks = in.getLong();
+        gravityAccumulator = in.getInt();
+        lockDelayCounter = in.getShort();
+        lockResets = in.get();
+        lowestY = in.getShort();
+        previousInput = in.get() & 0xFF;
+        shiftDirection = in.get();
+        dasCounter = in.getInt();
+        clearDelayCounter = in.getShort();
+        pendingGarbage = in.getShort();
+        garbageRandom.setState(in.getLong());
+        int hold = in.get();
+        holdType = hold == 0 ? 0 : PieceGenerator.checkType(hold);
+        scoring.readState(in);
+        erodedCells = in.getInt();
+        if (erodedCells < 0) {
+            throw new IllegalArgumentException("Bad eroded cell count: " + erodedCells);
+        }
+        generator.readState(in);
+        board.readCells(in);
+
+        if (isClearing) {
+            detectCompleteLines();
+        } else {
+            Arrays.fill(linesToClear, 0);
+            linesToClearCount = 0;
+        }
+        version++;
+        boardVersion++;
+    }
+
+    // 设置回放录制器（传入 null 停止录制），应在 reset 之后、第一帧之前设置
+    public void setRecorder(ReplayWriter recorder) {
+        this.recorder = recorder;
+    }
+
+    public int getGeneratorMode() {
+        return generator.getMode();
+    }
+
+    // Getter 方法
+
+    public Board getBoard() {
+        return board;
+    }
+
+    public Tetromino getCurrentTetromino() {
+        return currentTetromino;
+    }
+
+    public Tetromino getNextTetromino() {
+        return getPreview(0);
+    }
+
+    // 预览第 index 个即将出现的方块（0 表示下一个），最多 PieceGenerator.MAX_LOOKAHEAD 个
+    public Tetromino getPreview(int index) {
+        return Tetromino.of(generator.peek(index), 0);
+    }
+
+    // 只取预览方块的类型，直接读生成器的环形缓冲区
+    public int getPreviewType(int index) {
+        return generator.peek(index);
+    }
+
+    // 暂存的方块，暂存区为空时返回 null
+    public Tetromino getHoldTetromino() {
+        return holdType == 0 ? null : Tetromino.of(holdType, 0);
+    }
+
+    public int getHoldType() {
+        return holdType;
+    }
+
+    // 这个方块是否还可以暂存
+    public boolean canHold() {
+        return !holdUsed && !gameOver && !isClearing;
+    }
+
+    public long getSeed() {
+        return generator.getSeed();
+    }
+
+    public int getCurrentX() {
+        return currentX;
+    }
+
+    public int getCurrentY() {
+        return currentY;
+    }
+
+    // 幽灵方块（硬降落点）所在的行
+    public int getGhostY() {
+        return currentY + board.dropDistance(currentTetromino.getRowMasks(), currentX, currentY);
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    // 连击、背靠背和最近一次锁定的计分结果
+    public Scoring getScoring() {
+        return scoring;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getPiecesPlaced() {
+        return piecesPlaced;
+    }
+
+    public int getErodedCells() {
+        return erodedCells;
+    }
+
+    public int getPendingGarbage() {
+        return pendingGarbage;
+    }
+
+    // 等级从 1 开始，每消除 LINES_PER_LEVEL 行升一级，最高 MAX_LEVEL
+    public int getLevel() {
+        return Math.min(MAX_LEVEL, lines / LINES_PER_LEVEL + 1);
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public boolean isClearing() {
+        return isClearing;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public long getElapsedTicks() {
+        return elapsedTicks;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedTicks * 1000 / TICKS_PER_SECOND;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getBoardVersion() {
+        return boardVersion;
+    }
+}
@@ -0,0 +1,53 @@
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ GameEvents 类：自定义的 JFR (Java Flight Recorder) 事件，包住锁定、消行和绘制。
+ 没有开启 JFR 录制时，事件的 begin/commit 几乎没有开销。需要时这样启动游戏：
+   java -XX:StartFlightRecording=filename=tetris.jfr FrameTetris
+ 然后用 JDK Mission Control 打开，在 Tetris 分类下查看每次锁定、消行和绘制的耗时。
+ */
+public final class GameEvents {
+
+    private GameEvents() {
+    }
+
+    @Name("tetris.Lock")
+    @Label("Piece Lock")
+    @Category("Tetris")
+    @StackTrace(false)
+    public static class LockEvent extends Event {
+        @Label("Piece Type")
+        int pieceType;
+
+        @Label("Full Rows")
+        int fullRows;
+    }
+
+    @Name("tetris.Clear")
+    @Label("Line Clear")
+    @Category("Tetris")
+    @StackTrace(false)
+    public static class ClearEvent extends Event {
+        @Label("Lines")
+        int lines;
+    }
+
+    @Name("tetris.Paint")
+    @Label("Paint")
+    @Category("Tetris")
+    @StackTrace(false)
+    public static class PaintEvent extends Event {
+        @Label("Clip Width")
+        int clipWidth;
+
+        @Label("Clip Height")
+        int clipHeight;
+
+        @Label("Active Rendering")
+        boolean active;
+    }
+}
@@ -0,0 +1,157 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ GameLoop 类：可选的主动渲染模式 (active rendering)。
+ 用一个专用线程代替 Swing 计时器：按固定时间步长推进游戏逻辑，
+ 然后直接通过 JFrame 的 BufferStrategy 把画面翻页到屏幕上，不再依赖 Swing 合并重绘请求。
+ 渲染时把“距离上一逻辑帧经过的时间比例”传给 GamePanel，用于在两个逻辑帧之间插值。
+ 只画 GamePanel 自己绘制的内容，不画 Swing 组件：循环只在游戏进行时运行，
+ 暂停、弹出对话框或游戏结束时由 GamePanel 停止循环，把窗口和按钮交还给 Swing 绘制。
+ */
+public class GameLoop implements Runnable {
+    // 显示器刷新率未知时使用的帧率
+    private static final int DEFAULT_REFRESH_RATE = 60;
+
+    private final JFrame frame;
+    private final GamePanel panel;
+    private final int targetFps;  // 目标帧率，0 表示跟随显示器刷新率
+    private long frameNanos;      // 帧间隔，start 时确定
+
+    private volatile boolean running = false;  // 线程是否存活
+    private Thread thread;
+    private BufferStrategy bufferStrategy;
+    // 线程已经退出 / stop 等不到线程退出、改由线程退出时释放缓冲区（都由 this 保护）
+    private boolean exited = false;
+    private boolean releaseOnExit = false;
+
+    public GameLoop(JFrame frame, GamePanel panel, int targetFps) {
+        this.frame = frame;
+        this.panel = panel;
+        this.targetFps = targetFps;
+    }
+
+    //启动渲染线程（必须在 EDT 上、窗口可见之后调用）
+
+    public void start() {
+        if (running) return;
+
+        // show() 不保证等待垂直同步，不限帧率时按显示器刷新率限制，避免空转占满一个核
+        int fps = targetFps > 0 ? targetFps : refreshRate();
+        frameNanos = 1_000_000_000L / fps;
+
+        frame.setIgnoreRepaint(true);
+        frame.createBufferStrategy(2);
+        bufferStrategy = frame.getBufferStrategy();
+
+        running = true;
+        thread = new Thread(this, "tetris-game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //停止渲染线程并把窗口交还给 Swing 的普通绘制；线程还在画最后一帧时，由它退出时再释放缓冲区
+
+    public void stop() {
+        running = false;
+        Thread loop = thread;
+        thread = null;
+        if (loop != null && loop != Thread.currentThread()) {
+            try {
+                loop.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                if (!exited) {
+                    releaseOnExit = true;
+                    return;
+                }
+            }
+        }
+        release();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // 释放缓冲区并恢复 Swing 绘制（在 EDT 上调用）；窗口已经换上新循环的缓冲区时不再改动窗口
+    private void release() {
+        if (bufferStrategy == null) return;
+        boolean current = frame.getBufferStrategy() == bufferStrategy;
+        bufferStrategy.dispose();
+        bufferStrategy = null;
+        if (current) {
+            frame.setIgnoreRepaint(false);
+            frame.repaint();
+        }
+    }
+
+    @Override
+    public void run() {
+        long nextFrameTime = System.nanoTime();
+
+        while (running) {
+            // 固定步长推进逻辑（GamePanel 内部按真实时间累积并补齐逻辑帧）
+            panel.updateGame();
+
+            render();
+
+            nextFrameTime += frameNanos;
+            long sleep = nextFrameTime - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(sleep);
+            } else {
+                nextFrameTime = System.nanoTime(); // 落后太多时不再追赶
+            }
+        }
+
+        boolean release;
+        synchronized (this) {
+            exited = true;
+            release = releaseOnExit;
+        }
+        if (release) {
+            SwingUtilities.invokeLater(this::release);
+        }
+    }
+
+    // 窗口所在显示器的刷新率，未知时（例如某些虚拟显示器）返回 DEFAULT_REFRESH_RATE
+    private int refreshRate() {
+        GraphicsConfiguration config = frame.getGraphicsConfiguration();
+        if (config == null) return DEFAULT_REFRESH_RATE;
+        int rate = config.getDevice().getDisplayMode().getRefreshRate();
+        return rate != DisplayMode.REFRESH_RATE_UNKNOWN ? rate : DEFAULT_REFRESH_RATE;
+    }
+
+    private void render() {
+        BufferStrategy strategy = bufferStrategy;
+        if (strategy == null || !panel.isShowing()) return;
+
+        Point origin = SwingUtilities.convertPoint(panel, 0, 0, frame);
+        try {
+            do {
+                do {
+                    Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                    try {
+                        g2d.translate(origin.x, origin.y);
+                        g2d.clipRect(0, 0, panel.getWidth(), panel.getHeight());
+                        panel.renderActiveFrame(g2d);
+                    } finally {
+                        g2d.dispose();
+                    }
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+        } catch (IllegalStateException e) {
+            // 窗口正在销毁或缓冲区已被释放，跳过这一帧
+            return;
+        }
+
+        // 立即把绘制命令提交给显示系统，降低输入到显示的延迟
+        Toolkit.getDefaultToolkit().sync();
+    }
+}
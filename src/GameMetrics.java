@@ -0,0 +1,233 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/*
+ GameMetrics 类：运行时性能指标，用来排查卡顿。
+ 记录每一帧的绘制耗时和帧间隔（FPS）、每个逻辑帧的耗时、从按键事件到画面刷新的延迟，
+ 以及绘制线程每帧分配的内存。每种指标只保留最近 WINDOW 个样本，存放在固定大小的环形数组中，
+ 记录时不分配任何对象。
+ 游戏内按 F3 显示叠加层，同时通过 JMX 暴露（见 GameMetricsMBean）。
+ 记录在绘制线程和逻辑线程上进行，JMX 在其他线程读取，所以全部方法都加锁（无竞争时开销很小）。
+ */
+public class GameMetrics implements GameMetricsMBean {
+    public static final int WINDOW = 256;
+    public static final String OBJECT_NAME = "tetris:type=GameMetrics";
+
+    private final Window frameTimes = new Window();    // 绘制耗时（纳秒）
+    private final Window frameIntervals = new Window(); // 相邻两帧开始的间隔（纳秒）
+    private final Window tickTimes = new Window();     // 逻辑帧耗时（纳秒）
+    private final Window inputLatencies = new Window(); // 按键到画面的延迟（毫秒）
+    private final Window frameAllocations = new Window(); // 每帧分配的字节数
+
+    private long frameCount = 0;
+    private long tickCount = 0;
+    private long lastFrameStart = 0;
+    private long lastFrameAllocated = -1;
+    private long pendingInputWhen = 0; // 还没显示到画面上的最早一次按键时间（毫秒，0 表示没有）
+
+    private volatile GameEngine engine;
+    private ObjectName registeredName;
+
+    // 关联要在 JMX 中显示分数等计数器的引擎
+    public void attach(GameEngine engine) {
+        this.engine = engine;
+    }
+
+    //开始绘制一帧，返回开始时间，结束时传给 frameFinished
+
+    public synchronized long frameStarted() {
+        long now = System.nanoTime();
+        if (lastFrameStart != 0) {
+            frameIntervals.add(now - lastFrameStart);
+        }
+        lastFrameStart = now;
+
+        long allocated = currentThreadAllocatedBytes();
+        if (allocated >= 0 && lastFrameAllocated >= 0) {
+            frameAllocations.add(allocated - lastFrameAllocated);
+        }
+        lastFrameAllocated = allocated;
+        return now;
+    }
+
+    public synchronized void frameFinished(long startNanos) {
+        frameTimes.add(System.nanoTime() - startNanos);
+        frameCount++;
+
+        // 这一帧已经包含了之前的按键操作
+        if (pendingInputWhen != 0) {
+            inputLatencies.add(System.currentTimeMillis() - pendingInputWhen);
+            pendingInputWhen = 0;
+        }
+    }
+
+    public synchronized void tickFinished(long nanos) {
+        tickTimes.add(nanos);
+        tickCount++;
+    }
+
+    // 收到按键事件，when 为 KeyEvent.getWhen()
+    public synchronized void inputReceived(long when) {
+        if (pendingInputWhen == 0) {
+            pendingInputWhen = when;
+        }
+    }
+
+    //注册到平台 MBeanServer；同名的旧实例（上一局的面板）会被替换
+
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            // 监控不可用不影响游戏
+            System.err.println("Cannot register metrics MBean: " + e);
+        }
+    }
+
+    public void unregister() {
+        if (registeredName == null) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(registeredName)) {
+                server.unregisterMBean(registeredName);
+            }
+        } catch (JMException e) {
+            System.err.println("Cannot unregister metrics MBean: " + e);
+        }
+        registeredName = null;
+    }
+
+    // 当前线程累计分配的字节数；JVM 不支持时返回 -1
+    static long currentThreadAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    // MBean 属性
+
+    @Override
+    public synchronized double getFramesPerSecond() {
+        double mean = frameIntervals.mean();
+        return mean == 0 ? 0 : 1e9 / mean;
+    }
+
+    @Override
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public synchronized double getFrameTimeP50Micros() {
+        return frameTimes.percentile(0.50) / 1e3;
+    }
+
+    @Override
+    public synchronized double getFrameTimeP99Micros() {
+        return frameTimes.percentile(0.99) / 1e3;
+    }
+
+    @Override
+    public synchronized double getFrameTimeMaxMicros() {
+        return frameTimes.max() / 1e3;
+    }
+
+    @Override
+    public synchronized long getTickCount() {
+        return tickCount;
+    }
+
+    @Override
+    public synchronized double getTickTimeMeanMicros() {
+        return tickTimes.mean() / 1e3;
+    }
+
+    @Override
+    public synchronized double getTickTimeMaxMicros() {
+        return tickTimes.max() / 1e3;
+    }
+
+    @Override
+    public synchronized double getInputLatencyMeanMillis() {
+        return inputLatencies.mean();
+    }
+
+    @Override
+    public synchronized double getInputLatencyMaxMillis() {
+        return inputLatencies.max();
+    }
+
+    @Override
+    public synchronized double getAllocatedBytesPerFrame() {
+        return frameAllocations.mean();
+    }
+
+    @Override
+    public int getScore() {
+        GameEngine e = engine;
+        return e != null ? e.getScore() : 0;
+    }
+
+    @Override
+    public int getLines() {
+        GameEngine e = engine;
+        return e != null ? e.getLines() : 0;
+    }
+
+    @Override
+    public int getPiecesPlaced() {
+        GameEngine e = engine;
+        return e != null ? e.getPiecesPlaced() : 0;
+    }
+
+    /*
+     最近 WINDOW 个样本的环形数组。求百分位时复制到预先分配的数组里排序，不分配新对象。
+     */
+    private static final class Window {
+        private final long[] samples = new long[WINDOW];
+        private final long[] sorted = new long[WINDOW];
+        private int next = 0;
+        private int size = 0;
+
+        void add(long value) {
+            samples[next] = value;
+            next = (next + 1) % WINDOW;
+            if (size < WINDOW) size++;
+        }
+
+        double mean() {
+            if (size == 0) return 0;
+            long sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += samples[i];
+            }
+            return (double) sum / size;
+        }
+
+        long max() {
+            long max = 0;
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, samples[i]);
+            }
+            return max;
+        }
+
+        long percentile(double p) {
+            if (size == 0) return 0;
+            System.arraycopy(samples, 0, sorted, 0, size);
+            Arrays.sort(sorted, 0, size);
+            return sorted[Math.min(size - 1, (int) Math.ceil(p * size) - 1)];
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ GameMetricsMBean 接口：GameMetrics 通过 JMX 暴露的只读指标。
+ 用 jconsole / VisualVM 连接游戏进程，在 tetris:type=GameMetrics 下查看。
+ 时间类指标统计的是最近 GameMetrics.WINDOW 个样本。
+ */
+public interface GameMetricsMBean {
+
+    double getFramesPerSecond();
+
+    long getFrameCount();
+
+    double getFrameTimeP50Micros();
+
+    double getFrameTimeP99Micros();
+
+    double getFrameTimeMaxMicros();
+
+    long getTickCount();
+
+    double getTickTimeMeanMicros();
+
+    double getTickTimeMaxMicros();
+
+    double getInputLatencyMeanMillis();
+
+    double getInputLatencyMaxMillis();
+
+    double getAllocatedBytesPerFrame();
+
+    int getScore();
+
+    int getLines();
+
+    int getPiecesPlaced();
+}
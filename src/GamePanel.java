@@ -1,40 +1,128 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.font.GlyphVector;
 import javax.swing.border.LineBorder;
-import java.util.ArrayList;
-import java.util.List;
-
-//GamePanel 类：处理俄罗斯方块的游戏逻辑和渲染
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+//GamePanel 类：俄罗斯方块的界面层，把键盘输入交给 GameEngine，并负责渲染引擎状态
 public class GamePanel extends JPanel {
-    // 游戏网格参数
-    private static final int GRID_WIDTH = 10;
-    private static final int GRID_HEIGHT = 18;
-    private static final int CELL_SIZE = 40;
-
-    // 游戏状态
-    private int[][] grid;
-    private Tetromino currentTetromino;
-    private Tetromino nextTetromino;
-    private int currentX;
-    private int currentY;
-    private boolean gameOver = false;
-    private int score = 0;
-
-    // 计时器状态
-    private long startTime; // 游戏开始或恢复时的时间戳
-    private long totalElapsedTime = 0; // 累计经过的时间（毫秒）
-    private boolean isPaused = false; // 暂停状态标记
-
-    // 游戏循环
+    // 游戏网格参数：棋盘尺寸取自引擎，格子大小随窗口缩放（见 calculateGridOffset）
+    private final int gridWidth;
+    private final int gridHeight;
+    private int cellSize = PREVIEW_CELL_SIZE;
+    private static final int PREVIEW_CELL_SIZE = 40; // 右侧预览框和计时器固定使用的格子大小
+    private static final int MIN_CELL_SIZE = 2;
+    private static final int MIN_OUTLINED_CELL_SIZE = 8; // 格子更小时不画网格线，否则整片都是线
+    private static final int SIDE_PANEL_WIDTH = 200; // 网格两侧各留出的宽度（左侧放暂存框，右侧放预览框和计时器）
+    private static final int CONTROL_PANEL_WIDTH = 590; // 左上角按钮面板的宽度（最多 4 个按钮）
+
+    // 游戏逻辑全部在引擎中
+    private final GameEngine engine;
+
+    // 回放：正常游戏时录制到 replayWriter；观看回放时由 replayPlayer 代替键盘输入
+    private ReplayWriter replayWriter;
+    private String replayName; // 本局回放的文件名，写入成绩记录
+    private final ReplayPlayer replayPlayer;
+
+    // 这一局的成绩是否还没写入统计（回放和演示不计入统计）
+    private boolean statsPending;
+
+    // 演示模式：由 AI 等输入源代替键盘，游戏结束后自动重新开始
+    private final InputSource inputSource;
+    private static final int DEMO_RESTART_DELAY = 3000; // 毫秒
+
+    // 游戏循环：Swing 计时器只负责按真实时间驱动引擎的固定逻辑帧
     private Timer gameTimer;
-    private static final int GAME_SPEED = 500;
-
-    // 延迟消除计时器和状态
-    private Timer clearDelayTimer;
-    private static final int CLEAR_DELAY = 500; // 0.5 秒
-    private boolean isClearing = false; // 标记是否正在执行延迟清除（暂停主游戏）
-    private List<Integer> linesToClear = new ArrayList<>(); // 存储待清除的行索引
+    private static final int TIMER_PERIOD = 10; // 毫秒
+    private static final int MAX_TICKS_PER_UPDATE = 10; // 卡顿后最多补几帧，避免“追帧”导致更卡
+    private long lastUpdateTime; // 上一次驱动引擎的时间戳（纳秒）
+    private long tickAccumulator = 0; // 尚未消耗的时间（纳秒）
+
+    // 主动渲染模式下的专用循环线程，只在游戏进行时存在；为 null 时由 Swing 计时器驱动、Swing 绘制
+    private volatile GameLoop activeLoop;
+    // 启用了主动渲染时的窗口和目标帧率，每次恢复游戏都用它们启动新的循环
+    private JFrame activeFrame;
+    private int activeFps;
+    // 插值用：最后一个逻辑帧之前的方块状态
+    private int prevPieceX;
+    private int prevPieceY;
+    private Tetromino prevPiece;
+    private long prevBoardVersion = -1;
+    private double renderAlpha = 1.0;
+
+    // 幽灵方块：在落点处画出当前方块的轮廓，-Dtetris.ghost=false 关闭
+    private final boolean showGhost = !"false".equalsIgnoreCase(System.getProperty("tetris.ghost"));
+    private static final Color GHOST_FILL = new Color(255, 255, 255, 40);
+
+    // 性能指标：F3 显示叠加层，同时注册为 JMX MBean
+    private final GameMetrics metrics = new GameMetrics();
+    private volatile boolean showMetrics = false;
+    private static final Rectangle METRICS_BOUNDS = new Rectangle(10, 10, 190, 170);
+    private static final Color METRICS_BACKGROUND = new Color(0, 0, 0, 180);
+    private static final Font METRICS_FONT = new Font("Monospaced", Font.PLAIN, 12);
+    // 叠加层每秒只取样 4 次；每行按取样值（定点数）缓存排版结果，数值不变时不再格式化
+    private static final long METRICS_REFRESH_NANOS = 250_000_000L;
+    private final RenderCache.TextLine[] metricsText = {
+            new RenderCache.TextLine(METRICS_FONT, v -> String.format("FPS        %6.1f", v / 10.0)),
+            new RenderCache.TextLine(METRICS_FONT, v -> String.format("frame p50  %6.2f ms", v / 100.0)),
+            new RenderCache.TextLine(METRICS_FONT, v -> String.format("frame p99  %6.2f ms", v / 100.0)),
+            new RenderCache.TextLine(METRICS_FONT, v -> String.format("frame max  %6.2f ms", v / 100.0)),
+            new RenderCache.TextLine(METRICS_FONT, v -> String.format("tick avg   %6.1f us", v / 10.0)),
+            new RenderCache.TextLine(METRICS_FONT, v -> String.format("tick max   %6.1f us", v / 10.0)),
+            new RenderCache.TextLine(METRICS_FONT, v -> String.format("input lat  %6.1f ms", v / 10.0)),
+            new RenderCache.TextLine(METRICS_FONT, v -> String.format("alloc/frm  %6.1f KB", v / 10.0)),
+            new RenderCache.TextLine(METRICS_FONT, v -> v != 0 ? "render     active" : "render     swing"),
+    };
+    private final long[] metricsValues = new long[metricsText.length];
+    private long metricsSampledAt = System.nanoTime() - METRICS_REFRESH_NANOS;
+    private double metricsP50Micros;
+    private double metricsP99Micros;
+
+    // 预览队列：第一个方块用大格子，后面的用小格子依次排在下面；个数用 -Dtetris.preview=N 指定
+    private static final int DEFAULT_PREVIEW_COUNT = 5;
+    private static final int SMALL_PREVIEW_CELL_SIZE = PREVIEW_CELL_SIZE / 2;
+    private static final int SMALL_PREVIEW_SLOT_HEIGHT = 3 * SMALL_PREVIEW_CELL_SIZE;
+    private static final int HOLD_BOX_Y = 100; // 暂存框在网格顶部以下的距离，避开左上角的按钮面板
+    private static final Color HOLD_LOCKED_SHADE = new Color(50, 50, 50, 160); // 本回合已暂存过时罩在方块上
+    private final int previewCount = Math.max(1, Math.min(PieceGenerator.MAX_LOOKAHEAD,
+            Integer.getInteger("tetris.preview", DEFAULT_PREVIEW_COUNT)));
+
+    // 绘制资源缓存：格子图集、方块贴图，以及只在数值变化时重新排版的 HUD 文字
+    private final RenderCache renderCache = new RenderCache();
+    private final RenderCache.TextLine scoreText = new RenderCache.TextLine(RenderCache.SCORE_FONT, v -> "Score: " + v);
+    private final RenderCache.TextLine levelText = new RenderCache.TextLine(RenderCache.SCORE_FONT, v -> "Level: " + v);
+    private final RenderCache.TextLine timerText = new RenderCache.TextLine(RenderCache.TIMER_FONT, RenderCache::formatClock);
+    private final RenderCache.TextLine gameOverText = new RenderCache.TextLine(RenderCache.GAME_OVER_FONT, v -> "GAME OVER");
+    private final RenderCache.TextLine finalScoreText = new RenderCache.TextLine(RenderCache.FINAL_SCORE_FONT,
+            v -> "Final Score: " + v);
+
+    // 键盘事件队列：监听器只把 (按键事件, 时间戳) 入队，游戏循环在逻辑帧边界按时间戳取出处理
+    private static final int INPUT_QUEUE_CAPACITY = 256;
+    private static final int EVENT_RELEASE_ALL = -1; // 失去焦点：视为全部松开
+    private final InputQueue inputQueue = new InputQueue(INPUT_QUEUE_CAPACITY);
+
+    // 当前按住的按键（GameEngine.INPUT_* 的组合），只由游戏循环在 engine 锁内维护，每个逻辑帧都交给引擎
+    private int heldInput = GameEngine.INPUT_NONE;
+
+    // 渲染缓存：网格、已锁定方块、预览框和 HUD 边框等静态内容画在离屏图像里，
+    // 只在锁定/消行（棋盘版本号变化）或窗口尺寸变化时重建，每次重绘只需贴图
+    private BufferedImage backgroundImage;
+    private long backgroundBoardVersion = -1;
+
+    // 脏区域跟踪：记录上一次请求重绘时的状态，只重绘真正变化的区域
+    private long lastRepaintVersion = -1;
+    private long lastRepaintBoardVersion = -1;
+    private long lastRepaintSecond = -1;
+    private int lastRepaintScore = -1;
+    private boolean lastRepaintGameOver = false;
+    private final Rectangle lastPieceBounds = new Rectangle();
+    private final Rectangle pieceBounds = new Rectangle();
 
     // 返回菜单的回调
     private Runnable returnToMenuCallback;
@@ -43,7 +131,8 @@ public class GamePanel extends JPanel {
     private int gridOffsetX;
     private int gridOffsetY;
 
-    // 声明按钮
+    // 声明按钮（主动渲染循环运行时隐藏左上角的按钮面板）
+    private JPanel controlPanel;
     private JButton btnRestart;
     private JButton btnExit;
     private JButton btnPause;
@@ -52,7 +141,41 @@ public class GamePanel extends JPanel {
     private boolean gameOverButtonsCreated = false;
 
     public GamePanel(Runnable returnToMenuCallback) {
+        this(returnToMenuCallback, null, null, null);
+    }
+
+    // 回放模式：按真实时间重演录像，忽略除 ESC 以外的键盘输入
+    public GamePanel(Runnable returnToMenuCallback, ReplayPlayer replay) {
+        this(returnToMenuCallback, replay, null, null);
+    }
+
+    // 演示模式：由 source（例如 AutoPlayer）操作，忽略除 ESC 以外的键盘输入
+    public GamePanel(Runnable returnToMenuCallback, InputSource source) {
+        this(returnToMenuCallback, null, source, null);
+    }
+
+    // 继续存档：从快照恢复的引擎接着玩（回放必须从第 0 帧开始，所以继续的这一局不录制）
+    public GamePanel(Runnable returnToMenuCallback, GameEngine resumed) {
+        this(returnToMenuCallback, null, null, resumed);
+    }
+
+    private GamePanel(Runnable returnToMenuCallback, ReplayPlayer replay, InputSource source, GameEngine resumed) {
         this.returnToMenuCallback = returnToMenuCallback;
+        this.replayPlayer = replay;
+        this.inputSource = source;
+        if (resumed != null) {
+            this.engine = resumed;
+        } else {
+            this.engine = replay != null ? replay.createEngine() : GameEngine.withConfiguredBoard(createGenerator());
+        }
+        this.gridWidth = engine.getBoard().getWidth();
+        this.gridHeight = engine.getBoard().getHeight();
+        if (resumed == null) {
+            startRecording();
+        }
+        statsPending = replay == null && source == null;
+        metrics.attach(engine);
+        metrics.register();
 
         setBackground(new Color(30, 30, 30));
         setFocusable(true);
@@ -62,13 +185,91 @@ public class GamePanel extends JPanel {
 
         setupControlPanel();
 
-        initializeGame();
-
         setupKeyListener();
 
         startGameLoop();
     }
 
+    // 根据启动参数选择方块生成模式：-Dtetris.randomizer=bag 使用 7-bag，-Dtetris.seed=N 固定种子
+    private static PieceGenerator createGenerator() {
+        long seed = Long.getLong("tetris.seed", System.nanoTime());
+        if ("bag".equalsIgnoreCase(System.getProperty("tetris.randomizer"))) {
+            return PieceGenerator.sevenBag(seed);
+        }
+        return PieceGenerator.random(seed);
+    }
+
+    // 回放文件目录：-Dtetris.replayDir 指定，默认 ~/.tetris/replays
+    public static Path getReplayDirectory() {
+        String dir = System.getProperty("tetris.replayDir");
+        if (dir != null) {
+            return Paths.get(dir);
+        }
+        return Paths.get(System.getProperty("user.home"), ".tetris", "replays");
+    }
+
+    // 存档文件：-Dtetris.saveFile 指定，默认 ~/.tetris/save.tsnp
+    public static Path getSaveFile() {
+        String file = System.getProperty("tetris.saveFile");
+        if (file != null) {
+            return Paths.get(file);
+        }
+        return Paths.get(System.getProperty("user.home"), ".tetris", "save.tsnp");
+    }
+
+    //开始录制当前这一局（-Dtetris.record=false 可关闭录制）
+
+    private void startRecording() {
+        // 回放和演示模式不录制
+        if (replayPlayer != null || inputSource != null
+                || "false".equalsIgnoreCase(System.getProperty("tetris.record"))) return;
+
+        String name = "replay-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()) + ".trp";
+        try {
+            replayWriter = new ReplayWriter(getReplayDirectory().resolve(name),
+                    engine.getGeneratorMode(), engine.getSeed(), gridWidth, gridHeight);
+            engine.setRecorder(replayWriter);
+            replayName = name;
+        } catch (IOException e) {
+            // 录制失败不影响游戏
+            System.err.println("Cannot record replay: " + e);
+            replayWriter = null;
+        }
+    }
+
+    //结束录制：写入最终帧数和分数
+
+    private void finishRecording() {
+        if (replayWriter == null) return;
+        synchronized (engine) {
+            engine.setRecorder(null);
+            try {
+                replayWriter.finish(engine.getTickCount(), engine.getScore());
+            } catch (IOException e) {
+                System.err.println("Cannot finish replay: " + e);
+            }
+        }
+        replayWriter = null;
+    }
+
+    //把这一局写入成绩统计：正常结束的局，以及放过方块后中途重玩或返回菜单的局，每局只写一次
+
+    private void recordStats() {
+        if (!statsPending) return;
+        StatsStore.GameRecord record;
+        synchronized (engine) {
+            if (!engine.isGameOver() && engine.getPiecesPlaced() == 0) return;
+            record = StatsStore.GameRecord.of(engine, replayName);
+        }
+        statsPending = false;
+        try {
+            StatsStore.getDefault().append(record);
+        } catch (IOException e) {
+            // 统计失败不影响游戏
+            System.err.println("Cannot record statistics: " + e);
+        }
+    }
+
     //创建与主菜单风格一致的按钮
 
     private JButton createGameStyledButton(String text) {
@@ -89,7 +290,7 @@ public class GamePanel extends JPanel {
     //设置左上角控制按钮面板
 
     private void setupControlPanel() {
-        JPanel controlPanel = new JPanel();
+        controlPanel = new JPanel();
         controlPanel.setLayout(new FlowLayout(FlowLayout.LEFT, 20, 15));
         controlPanel.setOpaque(false);
 
@@ -106,65 +307,68 @@ public class GamePanel extends JPanel {
         controlPanel.add(btnPause);
         controlPanel.add(btnExit);
 
+        // 回放和演示模式不能存档
+        if (replayPlayer == null && inputSource == null) {
+            JButton btnSave = createGameStyledButton("Save");
+            btnSave.addActionListener(e -> saveAndExit());
+            controlPanel.add(btnSave);
+        }
+
         this.add(controlPanel);
-        controlPanel.setBounds(0, 0, 450, 60);
+        controlPanel.setBounds(0, 0, CONTROL_PANEL_WIDTH, 60);
 
         this.addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent e) {
-                controlPanel.setBounds(0, 0, 450, 60);
+                controlPanel.setBounds(0, 0, CONTROL_PANEL_WIDTH, 60);
             }
         });
     }
 
+    //保存当前局面并返回菜单，之后可以在菜单中选择 Resume 继续
+
+    private void saveAndExit() {
+        if (engine.isGameOver()) return;
+        boolean wasRunning = isLoopRunning();
+        if (wasRunning) {
+            stopLoop();
+        }
+
+        try {
+            synchronized (engine) {
+                GameSnapshot.save(engine, getSaveFile());
+            }
+            // 存档的这一局还没结束，继续玩完之后再计入统计
+            statsPending = false;
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Cannot save game: " + e.getMessage(),
+                    "Save", JOptionPane.ERROR_MESSAGE);
+            if (wasRunning) {
+                startLoop();
+            }
+            requestFocusInWindow();
+            return;
+        }
+        returnToMenu();
+    }
+
     //暂停/恢复游戏
 
     private void togglePause() {
-        if (gameOver || isClearing) return; // 消除延迟期间不能暂停
+        if (engine.isGameOver() || engine.isClearing()) return; // 消除延迟期间不能暂停
 
-        if (gameTimer.isRunning()) {
-            gameTimer.stop();
+        if (isLoopRunning()) {
+            // 暂停时引擎不再前进，游戏时间自然也停止累积
+            stopLoop();
             btnPause.setText("Resume");
-
-            // 计时器/暂停逻辑，累积时间
-            totalElapsedTime += (System.currentTimeMillis() - startTime);
-            isPaused = true;
         } else {
-            gameTimer.start();
+            startLoop();
             btnPause.setText("Pause");
-
-            // 计时器/恢复逻辑，重置起始时间
-            startTime = System.currentTimeMillis();
-            isPaused = false;
         }
         requestFocusInWindow();
         repaint();
     }
 
-    //初始化游戏
-
-    private void initializeGame() {
-        grid = new int[GRID_HEIGHT][GRID_WIDTH];
-
-        // 明确初始化 current 和 next Tetromino
-        currentTetromino = Tetromino.createRandom();
-        nextTetromino = Tetromino.createRandom();
-
-        currentX = GRID_WIDTH / 2 - 1;
-        currentY = 0;
-
-        if (!isValidPosition(currentX, currentY, currentTetromino)) {
-            gameOver = true;
-        }
-
-        // 计时器初始化
-        startTime = System.currentTimeMillis();
-        totalElapsedTime = 0;
-        isPaused = false;
-        isClearing = false;
-        linesToClear.clear();
-    }
-
     //清空并重玩当前游戏
 
     private void restartGame() {
@@ -175,34 +379,26 @@ public class GamePanel extends JPanel {
             gameOverButtonsCreated = false;
         }
 
-        grid = new int[GRID_HEIGHT][GRID_WIDTH];
-        score = 0;
-        gameOver = false;
-
-        // 明确创建当前方块和下一个方块
-        currentTetromino = Tetromino.createRandom();
-        nextTetromino = Tetromino.createRandom();
-
-        currentX = GRID_WIDTH / 2 - 1;
-        currentY = 0;
-
-        // 检查初始方块是否合法
-        if (!isValidPosition(currentX, currentY, currentTetromino)) {
-            gameOver = true;
+        finishRecording();
+        recordStats();
+        synchronized (engine) {
+            if (replayPlayer != null) {
+                // 回放模式下重新从头播放
+                engine.reset(replayPlayer.getSeed());
+                replayPlayer.rewind();
+            } else {
+                engine.reset();
+            }
         }
+        replayName = null;
+        startRecording();
+        statsPending = replayPlayer == null && inputSource == null;
 
-        if (gameTimer != null && !gameTimer.isRunning()) {
-            gameTimer.start();
+        if (gameTimer != null && !isLoopRunning()) {
+            startLoop();
         }
         btnPause.setText("Pause");
 
-        // 计时器重置
-        startTime = System.currentTimeMillis();
-        totalElapsedTime = 0;
-        isPaused = false;
-        isClearing = false;
-        linesToClear.clear();
-
         requestFocusInWindow();
         repaint();
     }
@@ -210,9 +406,9 @@ public class GamePanel extends JPanel {
     //处理刷新按钮点击时的确认对话框
 
     private void showRestartConfirmation() {
-        boolean wasRunning = gameTimer.isRunning();
+        boolean wasRunning = isLoopRunning();
         if (wasRunning) {
-            gameTimer.stop();
+            stopLoop();
         }
 
         String[] options = {"Yes", "No"};
@@ -231,7 +427,7 @@ public class GamePanel extends JPanel {
             restartGame();
         } else {
             if (wasRunning) {
-                gameTimer.start();
+                startLoop();
             }
         }
         requestFocusInWindow();
@@ -240,9 +436,9 @@ public class GamePanel extends JPanel {
     //处理退出按钮/ESC按下的确认对话框
 
     private void showExitConfirmation() {
-        boolean wasRunning = gameTimer.isRunning();
+        boolean wasRunning = isLoopRunning();
         if (wasRunning) {
-            gameTimer.stop();
+            stopLoop();
         }
 
         String[] options = {"Yes", "No"};
@@ -261,411 +457,677 @@ public class GamePanel extends JPanel {
             returnToMenu();
         } else {
             if (wasRunning) {
-                gameTimer.start();
+                startLoop();
             }
         }
         requestFocusInWindow();
     }
 
     private void calculateGridOffset() {
-        int gridPixelWidth = GRID_WIDTH * CELL_SIZE;
-        int gridPixelHeight = GRID_HEIGHT * CELL_SIZE;
+        // 格子大小按窗口缩放：网格占满高度，同时给两侧留出 SIDE_PANEL_WIDTH
+        if (getWidth() > 0 && getHeight() > 0) {
+            int fitWidth = (getWidth() - 2 * SIDE_PANEL_WIDTH) / gridWidth;
+            int fitHeight = getHeight() / gridHeight;
+            cellSize = Math.max(MIN_CELL_SIZE, Math.min(fitWidth, fitHeight));
+        }
+
+        int gridPixelWidth = gridWidth * cellSize;
+        int gridPixelHeight = gridHeight * cellSize;
 
         gridOffsetX = (getWidth() - gridPixelWidth) / 2;
         gridOffsetY = (getHeight() - gridPixelHeight) / 2;
     }
 
-    private void spawnNewTetromino() {
-        currentTetromino = nextTetromino;
-        nextTetromino = Tetromino.createRandom();
-
-        currentX = GRID_WIDTH / 2 - 1;
-        currentY = 0;
-
-        if (!isValidPosition(currentX, currentY, currentTetromino)) {
-            gameOver = true;
-            gameTimer.stop(); // 游戏结束时停止计时器
-            btnPause.setText("Pause");
+    private void returnToMenu() {
+        finishRecording();
+        recordStats();
+        metrics.unregister();
+        if (gameTimer != null) gameTimer.stop();
+        if (activeLoop != null) {
+            activeLoop.stop();
+            activeLoop = null;
+        }
+        activeFrame = null;
+        if (returnToMenuCallback != null) {
+            returnToMenuCallback.run();
         }
     }
 
-    private boolean isValidPosition(int x, int y, Tetromino tetromino) {
-        int[][] shape = tetromino.getShape();
-        int shapeSize = shape.length;
+    private void setupKeyListener() {
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
 
-        for (int r = 0; r < shapeSize; r++) {
-            for (int c = 0; c < shapeSize; c++) {
-                if (shape[r][c] == 1) {
-                    int gridX = x + c;
-                    int gridY = y + r;
+                if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+                    showExitConfirmation();
+                    return;
+                }
+                if (e.getKeyCode() == KeyEvent.VK_P) {
+                    togglePause();
+                    return;
+                }
+                if (e.getKeyCode() == KeyEvent.VK_F3) {
+                    showMetrics = !showMetrics;
+                    repaint(METRICS_BOUNDS);
+                    return;
+                }
 
-                    if (gridX < 0 || gridX >= GRID_WIDTH || gridY >= GRID_HEIGHT) {
-                        return false;
-                    }
+                if (inputForKey(e.getKeyCode()) == GameEngine.INPUT_NONE) return;
+                metrics.inputReceived(e.getWhen());
+                enqueueInput(keyEvent(e.getKeyCode(), true));
+            }
 
-                    if (gridY >= 0 && grid[gridY][gridX] != 0) {
-                        return false;
-                    }
-                }
+            @Override
+            public void keyReleased(KeyEvent e) {
+                if (inputForKey(e.getKeyCode()) == GameEngine.INPUT_NONE) return;
+                enqueueInput(keyEvent(e.getKeyCode(), false));
             }
-        }
-        return true;
+        });
+
+        // 失去焦点时收不到 keyReleased，直接视为全部松开
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                enqueueInput(EVENT_RELEASE_ALL);
+            }
+        });
     }
 
-    //方块锁定逻辑：现在在检测到满行时，会启动延迟消除计时器
+    // 队列中的事件：按键码左移一位，最低位表示按下 (1) 还是松开 (0)
+    private static int keyEvent(int keyCode, boolean pressed) {
+        return keyCode << 1 | (pressed ? 1 : 0);
+    }
 
-    private void lockTetromino() {
-        int[][] shape = currentTetromino.getShape();
-        int shapeSize = shape.length;
-        int colorValue = currentTetromino.getColor().getRGB();
+    // 在 EDT 上调用：只入队，不碰引擎；回放和演示模式不接受键盘操作
+    private void enqueueInput(int event) {
+        if (replayPlayer != null || inputSource != null) return;
+        inputQueue.offer(event, System.nanoTime());
+    }
 
-        for (int r = 0; r < shapeSize; r++) {
-            for (int c = 0; c < shapeSize; c++) {
-                if (shape[r][c] == 1) {
-                    int gridX = currentX + c;
-                    int gridY = currentY + r;
-                    if (gridY >= 0 && gridY < GRID_HEIGHT && gridX >= 0 && gridX < GRID_WIDTH) {
-                        grid[gridY][gridX] = colorValue;
-                    }
-                }
+    /**
+      在 engine 锁内调用：处理时间戳早于 before 的所有排队事件，更新按住的按键。
+      apply 为 true 时每个事件都立即交给引擎，这样同一帧内的“按下-松开”也不会丢失；
+      系统的按键自动重复会反复发来 keyPressed，对按住的键不产生新的按下，由引擎的 DAS/ARR 负责重复。
+     */
+    private void drainInput(long before, boolean apply) {
+        while (inputQueue.peekTime() < before) {
+            int event = inputQueue.poll();
+            if (event == EVENT_RELEASE_ALL) {
+                heldInput = GameEngine.INPUT_NONE;
+            } else if ((event & 1) != 0) {
+                heldInput |= inputForKey(event >> 1);
+            } else {
+                heldInput &= ~inputForKey(event >> 1);
+            }
+            if (apply && !engine.isGameOver()) {
+                engine.applyInput(heldInput);
             }
         }
+    }
 
-        int linesCleared = detectCompleteLines();
+    // 按键码对应的 GameEngine.INPUT_* 位（VersusPanel 使用同样的键位）
+    static int inputForKey(int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.VK_LEFT:
+                return GameEngine.INPUT_LEFT;
+            case KeyEvent.VK_RIGHT:
+                return GameEngine.INPUT_RIGHT;
+            case KeyEvent.VK_UP:
+            case KeyEvent.VK_X:
+                return GameEngine.INPUT_ROTATE;
+            case KeyEvent.VK_Z:
+            case KeyEvent.VK_CONTROL:
+                return GameEngine.INPUT_ROTATE_CCW;
+            case KeyEvent.VK_A:
+                return GameEngine.INPUT_ROTATE_180;
+            case KeyEvent.VK_DOWN:
+                return GameEngine.INPUT_SOFT_DROP;
+            case KeyEvent.VK_SPACE:
+            case KeyEvent.VK_ENTER:
+                return GameEngine.INPUT_DROP;
+            case KeyEvent.VK_C:
+            case KeyEvent.VK_SHIFT:
+                return GameEngine.INPUT_HOLD;
+            default:
+                return GameEngine.INPUT_NONE;
+        }
+    }
 
-        if (linesCleared > 0) {
-            // 暂停游戏下落
-            gameTimer.stop();
-            isClearing = true;
-
-            // 启动延迟计时器
-            clearDelayTimer = new Timer(CLEAR_DELAY, e -> {
-                // 延迟结束后执行实际消除
-                clearDelayTimer.stop();
-                actuallyClearLines();
-                isClearing = false;
-
-                // 消除完成后生成新方块并重启游戏
-                spawnNewTetromino();
-                gameTimer.start();
-                btnPause.setText("Pause"); // 确保暂停按钮文本正确显示
-                repaint();
-            });
-            clearDelayTimer.setRepeats(false); // 只执行一次
-            clearDelayTimer.start();
+    private void startGameLoop() {
+        gameTimer = new Timer(TIMER_PERIOD, e -> updateGame());
+        startLoop();
+    }
+
+    /**
+      切换到主动渲染模式：游戏进行时停止 Swing 计时器，改由 GameLoop 线程推进逻辑并直接翻页渲染。
+      targetFps 为 0 时跟随显示器刷新率。必须在面板显示之后调用。
+     */
+    public void enableActiveRendering(JFrame frame, int targetFps) {
+        boolean wasRunning = isLoopRunning();
+        stopLoop();
+        activeFrame = frame;
+        activeFps = targetFps;
+        if (wasRunning) {
+            startLoop();
+        }
+    }
+
+    // 游戏逻辑是否正在推进（无论使用哪种驱动方式）
+    private boolean isLoopRunning() {
+        return activeLoop != null ? activeLoop.isRunning() : gameTimer.isRunning();
+    }
 
+    // 暂停游戏循环；主动渲染时停止渲染线程，把窗口和按钮交还给 Swing 绘制
+    private void stopLoop() {
+        if (activeLoop != null) {
+            activeLoop.stop();
+            activeLoop = null;
+            controlPanel.setVisible(true);
+            repaint();
         } else {
-            // 没有满行则直接生成下一个方块
-            spawnNewTetromino();
+            gameTimer.stop();
         }
     }
 
-    //只检测满行，并将满行索引存储到 linesToClear 列表中
+    // 启动（或恢复）游戏循环，并丢弃暂停期间的时间；暂停期间的按键只更新按住状态，不算作操作
+    private void startLoop() {
+        synchronized (engine) {
+            lastUpdateTime = System.nanoTime();
+            tickAccumulator = 0;
+            drainInput(Long.MAX_VALUE, false);
+        }
+        if (activeFrame != null) {
+            // 渲染线程不画 Swing 组件，运行期间隐藏按钮（暂停用 P 键，退出用 ESC）
+            controlPanel.setVisible(false);
+            activeLoop = new GameLoop(activeFrame, this, activeFps);
+            activeLoop.start();
+        } else {
+            gameTimer.start();
+        }
+    }
 
-    private int detectCompleteLines() {
-        linesToClear.clear();
-        for (int row = GRID_HEIGHT - 1; row >= 0; row--) {
-            boolean isComplete = true;
-            for (int col = 0; col < GRID_WIDTH; col++) {
-                if (grid[row][col] == 0) {
-                    isComplete = false;
-                    break;
+    //按真实经过的时间推进引擎若干个固定逻辑帧（Swing 计时器或 GameLoop 线程调用）
+
+    void updateGame() {
+        synchronized (engine) {
+            long now = System.nanoTime();
+            tickAccumulator += now - lastUpdateTime;
+            lastUpdateTime = now;
+            // 下一个逻辑帧结束的时刻：发生在这一帧之内的按键在这一帧开始前处理
+            long tickEnd = now - tickAccumulator + GameEngine.TICK_NANOS;
+
+            int ticks = 0;
+            while (tickAccumulator >= GameEngine.TICK_NANOS && ticks < MAX_TICKS_PER_UPDATE) {
+                drainInput(tickEnd, true);
+
+                // 记录这一帧之前的方块状态，供渲染插值
+                prevPiece = engine.getCurrentTetromino();
+                prevPieceX = engine.getCurrentX();
+                prevPieceY = engine.getCurrentY();
+                prevBoardVersion = engine.getBoardVersion();
+
+                long tickStart = System.nanoTime();
+                if (replayPlayer != null) {
+                    replayPlayer.step(engine);
+                } else if (inputSource != null) {
+                    engine.step(inputSource.nextInput(engine));
+                } else {
+                    engine.step(heldInput);
                 }
+                metrics.tickFinished(System.nanoTime() - tickStart);
+                tickAccumulator -= GameEngine.TICK_NANOS;
+                tickEnd += GameEngine.TICK_NANOS;
+                ticks++;
             }
-
-            if (isComplete) {
-                linesToClear.add(row);
+            if (ticks == MAX_TICKS_PER_UPDATE) {
+                tickAccumulator = 0;
             }
         }
-        return linesToClear.size();
+
+        if (SwingUtilities.isEventDispatchThread()) {
+            checkGameOver();
+            repaintChanges();
+        } else if (engine.isGameOver() || (replayPlayer != null && replayPlayer.isFinished(engine))) {
+            // GameLoop 线程：游戏结束的处理（停止循环、显示按钮）交给 EDT
+            SwingUtilities.invokeLater(this::checkGameOver);
+        }
     }
 
-    //实际执行消除操作和加分
+    //主动渲染模式下由 GameLoop 线程调用：只把面板自己绘制的内容画到 BufferStrategy 上，不碰 Swing 组件
 
-    private void actuallyClearLines() {
-        if (linesToClear.isEmpty()) return;
+    void renderActiveFrame(Graphics2D g2d) {
+        synchronized (engine) {
+            // 插值系数：距离上一逻辑帧经过的时间占一帧的比例（循环只在游戏进行时运行）
+            renderAlpha = Math.min(1.0, (double) tickAccumulator / GameEngine.TICK_NANOS);
+            paintComponent(g2d);
+        }
+    }
 
-        // 从下往上清除，以确保索引正确
-        linesToClear.sort((a, b) -> b - a);
+    //根据引擎状态的变化，只请求重绘变化的区域
 
-        for (int row : linesToClear) {
-            // 向上移动上方所有行
-            for (int r = row; r > 0; r--) {
-                grid[r] = grid[r - 1].clone();
-            }
-            // 顶部创建新空行
-            grid[0] = new int[GRID_WIDTH];
-            score += 100;
+    private void repaintChanges() {
+        calculateGridOffset();
+
+        // 游戏结束时遮罩覆盖整个面板
+        if (engine.isGameOver() != lastRepaintGameOver) {
+            lastRepaintGameOver = engine.isGameOver();
+            repaint();
         }
-        linesToClear.clear();
-    }
 
-    private void moveDown() {
-        if (gameOver || isClearing) return; // 消除延迟期间不能移动
+        if (engine.getBoardVersion() != lastRepaintBoardVersion) {
+            // 锁定、消行或暂存：棋盘、预览框、暂存框和分数都可能变化
+            lastRepaintBoardVersion = engine.getBoardVersion();
+            repaint(getGridBounds());
+            repaint(getPreviewBounds());
+            repaint(getHoldBounds());
+            repaint(getScoreBounds());
+        } else if (engine.getVersion() != lastRepaintVersion) {
+            // 只有下落方块移动：重绘它的旧位置和新位置
+            repaint(lastPieceBounds);
+            repaint(getPieceBounds(pieceBounds));
+        }
+        lastRepaintVersion = engine.getVersion();
+        lastPieceBounds.setBounds(getPieceBounds(pieceBounds));
 
-        if (isValidPosition(currentX, currentY + 1, currentTetromino)) {
-            currentY++;
-        } else {
-            lockTetromino();
+        // 软降和硬降的得分不改变棋盘版本，分数要单独检查
+        if (engine.getScore() != lastRepaintScore) {
+            lastRepaintScore = engine.getScore();
+            repaint(getScoreBounds());
         }
-    }
-    private void moveLeft() {
-        if (gameOver || isClearing) return;
-        if (isValidPosition(currentX - 1, currentY, currentTetromino)) {
-            currentX--;
+
+        long second = engine.getElapsedMillis() / 1000;
+        if (second != lastRepaintSecond) {
+            lastRepaintSecond = second;
+            repaint(getTimerBounds());
         }
-    }
-    private void moveRight() {
-        if (gameOver || isClearing) return;
-        if (isValidPosition(currentX + 1, currentY, currentTetromino)) {
-            currentX++;
+
+        // 叠加层的数值到了取样时间才会变化
+        if (showMetrics && System.nanoTime() - metricsSampledAt >= METRICS_REFRESH_NANOS) {
+            repaint(METRICS_BOUNDS);
         }
     }
-    private void rotate() {
-        if (gameOver || isClearing) return;
-        Tetromino rotated = currentTetromino.rotate();
-        if (isValidPosition(currentX, currentY, rotated)) {
-            currentTetromino = rotated;
-        }
+
+    // 下落方块所在的形状矩阵区域（多留 1 像素给描边）；显示幽灵方块时一直延伸到落点
+    private Rectangle getPieceBounds(Rectangle bounds) {
+        int size = engine.getCurrentTetromino().getShape().length * cellSize;
+        int currentY = engine.getCurrentY();
+        int bottomY = showGhost && !engine.isGameOver() ? engine.getGhostY() : currentY;
+        bounds.setBounds(gridOffsetX + engine.getCurrentX() * cellSize - 1,
+                gridOffsetY + currentY * cellSize - 1, size + 2, (bottomY - currentY) * cellSize + size + 2);
+        return bounds;
     }
-    private void fastDrop() {
-        if (gameOver || isClearing) return;
-        while (isValidPosition(currentX, currentY + 1, currentTetromino)) {
-            currentY++;
-        }
-        lockTetromino();
+
+    // 网格区域（多留 2 像素给 3 像素宽的外边框）
+    private Rectangle getGridBounds() {
+        return new Rectangle(gridOffsetX - 2, gridOffsetY - 2,
+                gridWidth * cellSize + 4, gridHeight * cellSize + 4);
     }
 
-    private void returnToMenu() {
-        if (gameTimer != null) gameTimer.stop();
-        if (clearDelayTimer != null) clearDelayTimer.stop(); // 停止所有计时器
-        if (returnToMenuCallback != null) {
-            returnToMenuCallback.run();
-        }
+    private int getPreviewX() {
+        return gridOffsetX + (gridWidth * cellSize) + 30;
     }
 
-    private void setupKeyListener() {
-        addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyPressed(KeyEvent e) {
+    // 预览框的高度：第一个方块 4 格高，后面每个方块一个小格子的槽位
+    private int getPreviewHeight() {
+        return 4 * PREVIEW_CELL_SIZE + (previewCount - 1) * SMALL_PREVIEW_SLOT_HEIGHT;
+    }
 
-                if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
-                    showExitConfirmation();
-                    return;
-                }
+    private Rectangle getPreviewBounds() {
+        return new Rectangle(getPreviewX() - 1, gridOffsetY - 1,
+                4 * PREVIEW_CELL_SIZE + 2, getPreviewHeight() + 2);
+    }
 
-                // 只有在游戏运行且不处于清除延迟状态时才响应操作
-                if (gameTimer.isRunning() && !gameOver && !isClearing) {
-                    switch (e.getKeyCode()) {
-                        case KeyEvent.VK_LEFT:
-                            moveLeft();
-                            break;
-                        case KeyEvent.VK_RIGHT:
-                            moveRight();
-                            break;
-                        case KeyEvent.VK_UP:
-                        case KeyEvent.VK_DOWN:
-                            rotate();
-                            break;
-                        case KeyEvent.VK_SPACE:
-                        case KeyEvent.VK_ENTER:
-                            fastDrop();
-                            break;
-                    }
-                }
+    // 暂存框在网格左侧，与预览框对称
+    private Rectangle getHoldBox() {
+        int size = 4 * PREVIEW_CELL_SIZE;
+        return new Rectangle(gridOffsetX - 30 - size, gridOffsetY + HOLD_BOX_Y, size, size);
+    }
 
-                repaint();
-            }
-        });
+    private Rectangle getHoldBounds() {
+        Rectangle box = getHoldBox();
+        box.grow(1, 1);
+        return box;
     }
 
-    private void startGameLoop() {
-        gameTimer = new Timer(GAME_SPEED, e -> {
-            if (!gameOver && !isClearing) { // 延迟清除期间不执行下落
-                moveDown();
-                repaint();
+    private Rectangle getTimerBounds() {
+        Rectangle box = getTimerBox();
+        box.grow(1, 1);
+        box.height++;
+        return box;
+    }
+
+    // 分数和等级文字右对齐在右上角，这里取一块足够大的区域
+    private Rectangle getScoreBounds() {
+        return new Rectangle(getWidth() - 420, 0, 420, 120);
+    }
+
+    // 游戏结束时停止计时器
+    private void checkGameOver() {
+        if (engine.isGameOver()) {
+            finishRecording();
+            recordStats();
+        }
+        boolean replayEnded = replayPlayer != null && replayPlayer.isFinished(engine);
+        if ((engine.isGameOver() || replayEnded) && isLoopRunning()) {
+            stopLoop();
+            btnPause.setText("Pause");
+
+            // 演示模式：稍等片刻后自动开始下一局
+            if (inputSource != null && engine.isGameOver()) {
+                Timer restartTimer = new Timer(DEMO_RESTART_DELAY, e -> {
+                    if (isShowing() && engine.isGameOver()) {
+                        restartGame();
+                    }
+                });
+                restartTimer.setRepeats(false);
+                restartTimer.start();
             }
-        });
-        gameTimer.start();
+        }
     }
 
 
     @Override
     protected void paintComponent(Graphics g) {
+        long frameStart = metrics.frameStarted();
+        GameEvents.PaintEvent event = new GameEvents.PaintEvent();
+        event.begin();
+
         super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g;
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
         calculateGridOffset();
+        renderCache.validate(getGraphicsConfiguration());
 
-        drawGrid(g2d);
-        drawLockedTetrominos(g2d);
-        drawCurrentTetromino(g2d);
+        // 静态内容直接从缓存贴图（Swing 会按脏区域裁剪）
+        g2d.drawImage(getBackgroundImage(), 0, 0, null);
 
-        drawNextTetromino(g2d);
+        drawCurrentTetromino(g2d);
 
         drawTimer(g2d);
 
         drawScore(g2d);
 
-        if (gameOver) {
+        if (engine.isGameOver()) {
             drawGameOverMessage(g2d);
         }
+
+        if (showMetrics) {
+            drawMetrics(g2d);
+        }
+
+        if (event.shouldCommit()) {
+            Rectangle clip = g2d.getClipBounds();
+            event.clipWidth = clip != null ? clip.width : getWidth();
+            event.clipHeight = clip != null ? clip.height : getHeight();
+            event.active = activeLoop != null;
+            event.commit();
+        }
+        metrics.frameFinished(frameStart);
     }
 
-    //绘制游戏计时器
+    // 性能指标叠加层（F3 切换）
+    private void drawMetrics(Graphics2D g2d) {
+        Rectangle b = METRICS_BOUNDS;
+        g2d.setColor(METRICS_BACKGROUND);
+        g2d.fillRect(b.x, b.y, b.width, b.height);
 
-    private void drawTimer(Graphics2D g2d) {
-        //  获取当前累计时间
-        long currentTime;
-        // 延迟清除期间也算作暂停状态
-        if (isPaused || gameOver || isClearing) {
-            currentTime = totalElapsedTime;
-        } else {
-            currentTime = totalElapsedTime + (System.currentTimeMillis() - startTime);
+        long now = System.nanoTime();
+        if (now - metricsSampledAt >= METRICS_REFRESH_NANOS) {
+            sampleMetrics();
+            metricsSampledAt = now;
         }
 
-        // 格式化时间 (HH:MM:SS)
-        long seconds = currentTime / 1000;
-        long minutes = seconds / 60;
-        long hours = minutes / 60;
+        g2d.setColor(Color.GREEN);
+        int x = b.x + 8;
+        int y = b.y + 18;
+        int line = 16;
+        for (int i = 0; i < metricsText.length; i++) {
+            g2d.drawGlyphVector(metricsText[i].get(g2d, metricsValues[i]), x, y);
+            y += line;
+        }
+        drawFrameHistogram(g2d, x, y - line + 6, b.width - 16);
+    }
 
-        seconds %= 60;
-        minutes %= 60;
+    // 取样叠加层的数值，按每行显示的小数位数存成定点数
+    private void sampleMetrics() {
+        metricsP50Micros = metrics.getFrameTimeP50Micros();
+        metricsP99Micros = metrics.getFrameTimeP99Micros();
+        metricsValues[0] = Math.round(metrics.getFramesPerSecond() * 10);
+        metricsValues[1] = Math.round(metricsP50Micros / 10);
+        metricsValues[2] = Math.round(metricsP99Micros / 10);
+        metricsValues[3] = Math.round(metrics.getFrameTimeMaxMicros() / 10);
+        metricsValues[4] = Math.round(metrics.getTickTimeMeanMicros() * 10);
+        metricsValues[5] = Math.round(metrics.getTickTimeMaxMicros() * 10);
+        metricsValues[6] = Math.round(metrics.getInputLatencyMeanMillis() * 10);
+        metricsValues[7] = Math.round(metrics.getAllocatedBytesPerFrame() / 1024 * 10);
+        metricsValues[8] = activeLoop != null ? 1 : 0;
+    }
 
-        String timeStr = String.format("%02d:%02d:%02d", hours, minutes, seconds);
+    // 最近若干帧耗时的简易直方图：以 16.7 毫秒（60 FPS 的帧预算）为满格
+    private void drawFrameHistogram(Graphics2D g2d, int x, int y, int width) {
+        double budget = 1e6 / GameEngine.TICKS_PER_SECOND; // 微秒
+        int p50 = (int) Math.min(width, metricsP50Micros / budget * width);
+        int p99 = (int) Math.min(width, metricsP99Micros / budget * width);
+        g2d.setColor(Color.DARK_GRAY);
+        g2d.fillRect(x, y, width, 6);
+        g2d.setColor(Color.YELLOW);
+        g2d.fillRect(x, y, p99, 6);
+        g2d.setColor(Color.GREEN);
+        g2d.fillRect(x, y, p50, 6);
+    }
 
-        // 计算位置和大小 (继承自 Next 框)
-        int previewWidth = 4 * CELL_SIZE;
-        int previewHeight = 4 * CELL_SIZE;
-        int previewX = gridOffsetX + (GRID_WIDTH * CELL_SIZE) + 30;
-        int previewY = gridOffsetY;
+    //获取（必要时重建）静态内容的缓存图像
 
-        int timerBoxWidth = previewWidth;
-        int timerBoxHeight = CELL_SIZE + 10;
-        int verticalGap = 100;
-        int timerBoxX = previewX;
-        int timerBoxY = previewY + previewHeight + verticalGap;
+    private BufferedImage getBackgroundImage() {
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+
+        boolean sizeChanged = backgroundImage == null
+                || backgroundImage.getWidth() != width || backgroundImage.getHeight() != height;
+        if (sizeChanged) {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            backgroundImage = gc != null
+                    ? gc.createCompatibleImage(width, height)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+
+        if (sizeChanged || backgroundBoardVersion != engine.getBoardVersion()) {
+            Graphics2D g2d = backgroundImage.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            g2d.setColor(getBackground());
+            g2d.fillRect(0, 0, width, height);
+
+            drawGrid(g2d);
+            drawLockedTetrominos(g2d);
+            drawPreviewQueue(g2d);
+            drawHold(g2d);
+            drawTimerFrame(g2d);
+
+            g2d.dispose();
+            backgroundBoardVersion = engine.getBoardVersion();
+        }
+        return backgroundImage;
+    }
+
+    //绘制计时器的标题和边框（静态部分，画在缓存里）
+
+    private void drawTimerFrame(Graphics2D g2d) {
+        Rectangle box = getTimerBox();
 
         // 绘制标题 "TIMER"
         g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Arial", Font.BOLD, 20));
-        g2d.drawString("TIMER", timerBoxX, timerBoxY - 10);
+        g2d.setFont(RenderCache.TITLE_FONT);
+        g2d.drawString("TIMER", box.x, box.y - 10);
 
         //  绘制背景和边框
-        g2d.setColor(new Color(50, 50, 50));
-        g2d.fillRect(timerBoxX, timerBoxY, timerBoxWidth, timerBoxHeight);
+        g2d.setColor(RenderCache.PANEL_FILL);
+        g2d.fillRect(box.x, box.y, box.width, box.height);
 
         g2d.setColor(Color.WHITE);
-        g2d.setStroke(new BasicStroke(2));
-        g2d.drawRect(timerBoxX, timerBoxY, timerBoxWidth, timerBoxHeight);
+        g2d.setStroke(RenderCache.FRAME_STROKE);
+        g2d.drawRect(box.x, box.y, box.width, box.height);
+    }
 
-        //  绘制时间文本
-        g2d.setFont(new Font("Arial", Font.BOLD, 30));
-        g2d.setColor(Color.YELLOW);
+    // 计算计时器框的位置和大小 (继承自 Next 框)
+    private Rectangle getTimerBox() {
+        int previewWidth = 4 * PREVIEW_CELL_SIZE;
+        int previewHeight = getPreviewHeight();
+        int previewX = getPreviewX();
+        int previewY = gridOffsetY;
+
+        int timerBoxWidth = previewWidth;
+        int timerBoxHeight = PREVIEW_CELL_SIZE + 10;
+        int verticalGap = 100;
+        return new Rectangle(previewX, previewY + previewHeight + verticalGap, timerBoxWidth, timerBoxHeight);
+    }
 
-        FontMetrics fm = g2d.getFontMetrics();
-        int textWidth = fm.stringWidth(timeStr);
-        int ascent = fm.getAscent();
+    //绘制游戏计时器的时间文本
+
+    private void drawTimer(Graphics2D g2d) {
+        //  获取当前累计时间（引擎在暂停、延迟清除和游戏结束时不计时），文字每秒才重新排版一次
+        GlyphVector glyphs = timerText.get(g2d, engine.getElapsedMillis() / 1000);
 
-        // 居中显示文本
-        int textX = timerBoxX + (timerBoxWidth - textWidth) / 2;
-        int textY = timerBoxY + (timerBoxHeight + ascent) / 2 - 5;
+        Rectangle box = getTimerBox();
 
-        g2d.drawString(timeStr, textX, textY);
+        //  居中绘制时间文本
+        g2d.setColor(Color.YELLOW);
+        float textX = box.x + (box.width - timerText.getWidth()) / 2;
+        float textY = box.y + (box.height + timerText.getAscent()) / 2 - 5;
+        g2d.drawGlyphVector(glyphs, textX, textY);
     }
 
-    private void drawNextTetromino(Graphics2D g2d) {
-        if (nextTetromino == null) return;
+    //绘制预览队列：直接读引擎的预览类型，第一个方块居中在 4x4 的区域里，其余的依次缩小排在下面
 
-        int previewWidth = 4 * CELL_SIZE;
-        int previewHeight = 4 * CELL_SIZE;
-        int previewX = gridOffsetX + (GRID_WIDTH * CELL_SIZE) + 30;
+    private void drawPreviewQueue(Graphics2D g2d) {
+        int previewWidth = 4 * PREVIEW_CELL_SIZE;
+        int previewX = getPreviewX();
         int previewY = gridOffsetY;
 
-        g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Arial", Font.BOLD, 20));
-        g2d.drawString("NEXT", previewX, previewY - 10);
+        drawSlotFrame(g2d, "NEXT", previewX, previewY, previewWidth, getPreviewHeight());
 
-        g2d.setColor(new Color(50, 50, 50));
-        g2d.fillRect(previewX, previewY, previewWidth, previewHeight);
+        drawCentered(g2d, renderCache.getPieceSprite(engine.getPreviewType(0), PREVIEW_CELL_SIZE),
+                previewX, previewY, previewWidth, 4 * PREVIEW_CELL_SIZE);
+        int slotY = previewY + 4 * PREVIEW_CELL_SIZE;
+        for (int i = 1; i < previewCount; i++) {
+            drawCentered(g2d, renderCache.getPieceSprite(engine.getPreviewType(i), SMALL_PREVIEW_CELL_SIZE),
+                    previewX, slotY, previewWidth, SMALL_PREVIEW_SLOT_HEIGHT);
+            slotY += SMALL_PREVIEW_SLOT_HEIGHT;
+        }
+    }
 
-        g2d.setColor(Color.WHITE);
-        g2d.setStroke(new BasicStroke(2));
-        g2d.drawRect(previewX, previewY, previewWidth, previewHeight);
+    //绘制暂存框；这个方块已经暂存过一次时把暂存的方块画暗
 
-        int[][] shape = nextTetromino.getShape();
-        g2d.setColor(nextTetromino.getColor());
+    private void drawHold(Graphics2D g2d) {
+        Rectangle box = getHoldBox();
+        drawSlotFrame(g2d, "HOLD", box.x, box.y, box.width, box.height);
 
-        int cellOffset = shape.length == 4 ? 0 : (CELL_SIZE / 2);
+        int holdType = engine.getHoldType();
+        if (holdType == 0) return;
+        drawCentered(g2d, renderCache.getPieceSprite(holdType, PREVIEW_CELL_SIZE), box.x, box.y, box.width, box.height);
+        if (!engine.canHold() && !engine.isClearing()) {
+            g2d.setColor(HOLD_LOCKED_SHADE);
+            g2d.fillRect(box.x + 1, box.y + 1, box.width - 1, box.height - 1);
+        }
+    }
 
-        for (int r = 0; r < shape.length; r++) {
-            for (int c = 0; c < shape.length; c++) {
-                if (shape[r][c] == 1) {
-                    int x = previewX + cellOffset + c * CELL_SIZE;
-                    int y = previewY + cellOffset + r * CELL_SIZE;
+    private static void drawSlotFrame(Graphics2D g2d, String title, int x, int y, int width, int height) {
+        g2d.setColor(Color.WHITE);
+        g2d.setFont(RenderCache.TITLE_FONT);
+        g2d.drawString(title, x, y - 10);
 
-                    g2d.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-                    g2d.setColor(Color.BLACK);
-                    g2d.drawRect(x, y, CELL_SIZE, CELL_SIZE);
-                    g2d.setColor(nextTetromino.getColor());
-                }
-            }
-        }
+        g2d.setColor(RenderCache.PANEL_FILL);
+        g2d.fillRect(x, y, width, height);
+
+        g2d.setColor(Color.WHITE);
+        g2d.setStroke(RenderCache.FRAME_STROKE);
+        g2d.drawRect(x, y, width, height);
+    }
+
+    private static void drawCentered(Graphics2D g2d, BufferedImage sprite, int x, int y, int width, int height) {
+        g2d.drawImage(sprite, x + (width - sprite.getWidth()) / 2, y + (height - sprite.getHeight()) / 2, null);
     }
 
     private void drawGrid(Graphics2D g2d) {
         g2d.setColor(Color.BLACK);
-        g2d.fillRect(gridOffsetX, gridOffsetY, GRID_WIDTH * CELL_SIZE, GRID_HEIGHT * CELL_SIZE);
+        g2d.fillRect(gridOffsetX, gridOffsetY, gridWidth * cellSize, gridHeight * cellSize);
 
-        g2d.setColor(new Color(80, 80, 80));
-        for (int row = 0; row <= GRID_HEIGHT; row++) {
-            g2d.drawLine(gridOffsetX, gridOffsetY + row * CELL_SIZE,
-                    gridOffsetX + GRID_WIDTH * CELL_SIZE, gridOffsetY + row * CELL_SIZE);
+        g2d.setColor(RenderCache.GRID_LINE);
+        for (int row = 0; row <= gridHeight && cellSize >= MIN_OUTLINED_CELL_SIZE; row++) {
+            g2d.drawLine(gridOffsetX, gridOffsetY + row * cellSize,
+                    gridOffsetX + gridWidth * cellSize, gridOffsetY + row * cellSize);
         }
-        for (int col = 0; col <= GRID_WIDTH; col++) {
-            g2d.drawLine(gridOffsetX + col * CELL_SIZE, gridOffsetY,
-                    gridOffsetX + col * CELL_SIZE, gridOffsetY + GRID_HEIGHT * CELL_SIZE);
+        for (int col = 0; col <= gridWidth && cellSize >= MIN_OUTLINED_CELL_SIZE; col++) {
+            g2d.drawLine(gridOffsetX + col * cellSize, gridOffsetY,
+                    gridOffsetX + col * cellSize, gridOffsetY + gridHeight * cellSize);
         }
 
         g2d.setColor(Color.WHITE);
-        g2d.setStroke(new BasicStroke(3));
-        g2d.drawRect(gridOffsetX, gridOffsetY, GRID_WIDTH * CELL_SIZE, GRID_HEIGHT * CELL_SIZE);
+        g2d.setStroke(RenderCache.GRID_BORDER_STROKE);
+        g2d.drawRect(gridOffsetX, gridOffsetY, gridWidth * cellSize, gridHeight * cellSize);
     }
 
     private void drawLockedTetrominos(Graphics2D g2d) {
-        for (int row = 0; row < GRID_HEIGHT; row++) {
-            for (int col = 0; col < GRID_WIDTH; col++) {
-                if (grid[row][col] != 0) {
-                    int x = gridOffsetX + col * CELL_SIZE;
-                    int y = gridOffsetY + row * CELL_SIZE;
-
-                    g2d.setColor(new Color(grid[row][col]));
-                    g2d.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-                    g2d.setColor(Color.BLACK);
-                    g2d.drawRect(x, y, CELL_SIZE, CELL_SIZE);
+        Board board = engine.getBoard();
+        for (int row = 0; row < gridHeight; row++) {
+            for (int col = 0; col < gridWidth; col++) {
+                if (board.isFilled(row, col)) {
+                    int x = gridOffsetX + col * cellSize;
+                    int y = gridOffsetY + row * cellSize;
+
+                    g2d.drawImage(renderCache.getCell(board.getColor(row, col), cellSize), x, y, null);
                 }
             }
         }
     }
 
     private void drawCurrentTetromino(Graphics2D g2d) {
-        if (isClearing) return; // 延迟清除期间不绘制下落方块
+        if (engine.isClearing()) return; // 延迟清除期间不绘制下落方块
 
+        Tetromino currentTetromino = engine.getCurrentTetromino();
+        int currentX = engine.getCurrentX();
+        int currentY = engine.getCurrentY();
         int[][] shape = currentTetromino.getShape();
         int shapeSize = shape.length;
 
-        g2d.setColor(currentTetromino.getColor());
+        if (showGhost && !engine.isGameOver()) {
+            drawGhost(g2d, shape, currentX, engine.getGhostY(), currentTetromino.getColor());
+        }
+
+        // 主动渲染模式下，重力下落一格时在两个逻辑帧之间做平滑插值（横移和旋转不插值，保证按键即时可见）
+        int offsetY = 0;
+        if (activeLoop != null && prevBoardVersion == engine.getBoardVersion()
+                && prevPiece == currentTetromino && prevPieceX == currentX && currentY == prevPieceY + 1) {
+            offsetY = (int) Math.round(-(1.0 - renderAlpha) * cellSize);
+        }
+
+        BufferedImage cell = renderCache.getCell(currentTetromino.getColor().getRGB(), cellSize);
         for (int r = 0; r < shapeSize; r++) {
             for (int c = 0; c < shapeSize; c++) {
                 if (shape[r][c] == 1) {
-                    int x = gridOffsetX + (currentX + c) * CELL_SIZE;
-                    int y = gridOffsetY + (currentY + r) * CELL_SIZE;
+                    int x = gridOffsetX + (currentX + c) * cellSize;
+                    int y = gridOffsetY + (currentY + r) * cellSize + offsetY;
                     if (y >= gridOffsetY) {
-                        g2d.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-                        g2d.setColor(Color.BLACK);
-                        g2d.drawRect(x, y, CELL_SIZE, CELL_SIZE);
-                        g2d.setColor(currentTetromino.getColor());
+                        g2d.drawImage(cell, x, y, null);
+                    }
+                }
+            }
+        }
+    }
+
+    // 幽灵方块：半透明底色加方块颜色的轮廓，落点由棋盘天际线直接算出
+    private void drawGhost(Graphics2D g2d, int[][] shape, int ghostX, int ghostY, Color color) {
+        for (int r = 0; r < shape.length; r++) {
+            for (int c = 0; c < shape.length; c++) {
+                if (shape[r][c] == 1) {
+                    int x = gridOffsetX + (ghostX + c) * cellSize;
+                    int y = gridOffsetY + (ghostY + r) * cellSize;
+                    if (y >= gridOffsetY) {
+                        g2d.setColor(GHOST_FILL);
+                        g2d.fillRect(x, y, cellSize, cellSize);
+                        g2d.setColor(color);
+                        g2d.drawRect(x + 1, y + 1, cellSize - 2, cellSize - 2);
                     }
                 }
             }
@@ -674,16 +1136,17 @@ public class GamePanel extends JPanel {
 
     private void drawScore(Graphics2D g2d) {
         g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Arial", Font.BOLD, 28));
-
-        String scoreText = "Score: " + score;
-        FontMetrics fm = g2d.getFontMetrics();
 
         int margin = 30;
-        int x = getWidth() - fm.stringWidth(scoreText) - margin;
-        int y = margin + fm.getAscent();
-
-        g2d.drawString(scoreText, x, y);
+        GlyphVector glyphs = scoreText.get(g2d, engine.getScore());
+        float x = getWidth() - scoreText.getWidth() - margin;
+        float y = margin + scoreText.getAscent();
+        g2d.drawGlyphVector(glyphs, x, y);
+
+        // 等级显示在分数下方
+        glyphs = levelText.get(g2d, engine.getLevel());
+        x = getWidth() - levelText.getWidth() - margin;
+        g2d.drawGlyphVector(glyphs, x, y + scoreText.getHeight());
     }
 
     // 创建 Game Over 界面的按钮
@@ -711,36 +1174,36 @@ public class GamePanel extends JPanel {
     }
 
     private void drawGameOverMessage(Graphics2D g2d) {
-        g2d.setColor(new Color(0, 0, 0, 180));
+        g2d.setColor(RenderCache.GAME_OVER_SHADE);
         g2d.fillRect(0, 0, getWidth(), getHeight());
 
         g2d.setColor(Color.RED);
-        g2d.setFont(new Font("Arial", Font.BOLD, 60));
-        String gameOverText = "GAME OVER";
-        FontMetrics fm = g2d.getFontMetrics();
-        int x = (getWidth() - fm.stringWidth(gameOverText)) / 2;
+        GlyphVector glyphs = gameOverText.get(g2d, 0);
+        float x = (getWidth() - gameOverText.getWidth()) / 2;
         int y = getHeight() / 2 - 20;
-        g2d.drawString(gameOverText, x, y);
+        g2d.drawGlyphVector(glyphs, x, y);
 
         g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Arial", Font.PLAIN, 32));
-        String scoreText = "Final Score: " + score;
-        fm = g2d.getFontMetrics();
-        x = (getWidth() - fm.stringWidth(scoreText)) / 2;
-        g2d.drawString(scoreText, x, y + 90);
+        glyphs = finalScoreText.get(g2d, engine.getScore());
+        x = (getWidth() - finalScoreText.getWidth()) / 2;
+        g2d.drawGlyphVector(glyphs, x, y + 90);
 
-        // 创建按钮（只创建一次）
+        // 创建按钮（只创建一次）；主动渲染时绘制在 GameLoop 线程上，组件操作交回 EDT
         if (!gameOverButtonsCreated) {
-            createGameOverButtons();
             gameOverButtonsCreated = true;
+            if (SwingUtilities.isEventDispatchThread()) {
+                createGameOverButtons();
+            } else {
+                SwingUtilities.invokeLater(this::createGameOverButtons);
+            }
         }
     }
 
     public int getScore() {
-        return score;
+        return engine.getScore();
     }
 
     public boolean isGameOver() {
-        return gameOver;
+        return engine.isGameOver();
     }
 }
\ No newline at end of file
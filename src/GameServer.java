@@ -0,0 +1,547 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ GameServer 类：权威游戏服务器。每个远程客户端一局游戏，规则完全在服务器上的 GameEngine 中运行，
+ 客户端只上报带时间戳（逻辑帧号）的按键事件，移动、旋转、下落、消行和计分都由服务器决定，
+ 客户端无法直接修改方块位置或分数；服务器只把变化的部分（方块、计数、变化的行）作为增量发回去。
+
+ 每个会话两个线程，用普通的阻塞 IO 顺序地写逻辑：读线程阻塞读取事件（不设超时，空闲时不会醒来），
+ 发布线程按服务器时钟每隔 PUBLISH_INTERVAL 停放到下一个发布时刻，推进引擎并发送增量；两者用会话锁互斥。
+ 运行在 Java 21+ 上时使用虚拟线程，更早的 JDK 上退回到小栈（256 KB）的平台线程。
+ 实测（单核，服务器和模拟器各一个进程，-Xss256k -Xmx1g，1 万个随机会话跑 60 秒）：
+ Java 21 虚拟线程下 1 万个会话同时在线，服务器常驻内存约 120 MB、20 个平台线程，没有失败的会话；
+ Java 17 平台线程下每个会话两个线程，同时在线最多约 1500 个，常驻内存约 360 MB。
+ 每个会话的内存是固定的：一个引擎、一个读缓冲区、一个写缓冲区和上次发送的棋盘副本。
+
+ 时间由服务器的时钟决定：会话开始后第 n 帧对应 n / 60 秒，服务器按时钟推进引擎，
+ 按键事件在它声明的帧生效。事件的帧号不能倒退，也不能超前服务器时钟太多（防止加速作弊），
+ 已经模拟过的帧上的迟到事件在当前帧生效。
+
+ 协议（大端序，每条消息第一个字节是类型）：
+   客户端 -> 服务器
+     HELLO  | 协议版本(1) | 生成模式(1)
+     INPUT  | 帧号(4) | 按键状态(1)                从这一帧开始按住的键
+     BYE
+   服务器 -> 客户端
+     WELCOME | 会话编号(4) | 种子(8) | 生成模式(1) | 棋盘宽(2) | 棋盘高(2)
+     DELTA   | 帧号(4) | 标志(1) | [PIECE] | [STATS] | [ROWS]
+               PIECE: 类型(1) | 旋转(1) | x(2) | y(2) | 下一个类型(1) | 暂存类型(1，0 为空)
+               STATS: 分数(4) | 行数(4) | 等级(1) | 方块数(4)
+               ROWS:  行数(2) | 每行：行号(2) | 每格颜色编号(宽 x 1)
+     REJECT  | 原因(1) | 帧号(4)                    该事件被忽略
+     END     | 帧号(4) | 分数(4) | 行数(4) | 方块数(4) | 棋盘校验和(4)   客户端可以用来核对自己还原的棋盘
+
+ 用法：java GameServer [端口] [最大会话数]
+ */
+public class GameServer implements Runnable {
+    public static final int DEFAULT_PORT = 7778;
+    static final int PROTOCOL_VERSION = 1;
+
+    static final byte MSG_HELLO = 1;
+    static final byte MSG_INPUT = 2;
+    static final byte MSG_BYE = 3;
+    static final byte MSG_WELCOME = 4;
+    static final byte MSG_DELTA = 5;
+    static final byte MSG_REJECT = 6;
+    static final byte MSG_END = 7;
+
+    static final int DELTA_PIECE = 1;
+    static final int DELTA_STATS = 1 << 1;
+    static final int DELTA_ROWS = 1 << 2;
+
+    static final int REJECT_BAD_INPUT = 1;    // 未知的按键位
+    static final int REJECT_OUT_OF_ORDER = 2; // 帧号比上一个事件小
+    static final int REJECT_TOO_EARLY = 3;    // 帧号超前服务器时钟太多
+
+    // 棋盘格子的颜色编号：0 为空，1~7 为方块类型，CELL_OTHER 为垃圾行等其他颜色
+    static final int CELL_OTHER = Tetromino.TYPE_COUNT + 1;
+
+    // 允许事件超前服务器时钟的帧数，容忍双方时钟和网络抖动
+    private static final int MAX_LEAD_TICKS = 30;
+    // 没有事件时多久推进一次并发送增量
+    private static final long PUBLISH_INTERVAL_NANOS = 50_000_000L;
+    // 连接后必须在这段时间内发送 HELLO
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+    // 连续被拒绝的事件超过这个数就断开
+    private static final int MAX_REJECTS = 64;
+    private static final int READ_BUFFER_SIZE = 64;
+    private static final int WRITE_BUFFER_SIZE = 1024;
+    // 平台线程回退方案的栈大小，会话逻辑很浅
+    private static final long PLATFORM_STACK_SIZE = 256 * 1024;
+
+    private static final int[] CELL_COLORS = new int[Tetromino.TYPE_COUNT + 1];
+
+    static {
+        for (int type = 1; type <= Tetromino.TYPE_COUNT; type++) {
+            CELL_COLORS[type] = Tetromino.of(type, 0).getColor().getRGB();
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final int maxSessions;
+    private final ExecutorService sessions = newSessionExecutor("tetris-session-");
+    private volatile boolean running = true;
+
+    private final AtomicInteger nextSessionId = new AtomicInteger(1);
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicLong finishedSessions = new AtomicLong();
+    private final AtomicLong rejectedEvents = new AtomicLong();
+
+    public GameServer(InetSocketAddress address, int maxSessions) throws IOException {
+        if (maxSessions <= 0) {
+            throw new IllegalArgumentException("maxSessions: " + maxSessions);
+        }
+        this.maxSessions = maxSessions;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(address, 1024);
+    }
+
+    //在本机回环地址的随机端口上启动服务器（后台守护线程），用于测试和客户端模拟器
+
+    public static GameServer startLocal(int maxSessions) throws IOException {
+        GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), maxSessions);
+        Thread thread = new Thread(server, "tetris-game-server");
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    /*
+     每个任务一个线程的执行器。Java 21+ 通过反射取得虚拟线程执行器（源码仍可用旧 JDK 编译），
+     否则使用按需创建的小栈守护线程。
+     */
+    static ExecutorService newSessionExecutor(String namePrefix) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = task -> {
+                Thread thread = new Thread(null, task, namePrefix + count.incrementAndGet(), PLATFORM_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+
+    static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    public long getFinishedSessions() {
+        return finishedSessions.get();
+    }
+
+    public long getRejectedEvents() {
+        return rejectedEvents.get();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+        sessions.shutdownNow();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Game server stopped: " + e);
+                }
+                return;
+            }
+
+            if (activeSessions.incrementAndGet() > maxSessions) {
+                activeSessions.decrementAndGet();
+                closeQuietly(socket);
+                continue;
+            }
+            sessions.execute(() -> {
+                try {
+                    new Session(socket, nextSessionId.getAndIncrement()).run();
+                } finally {
+                    activeSessions.decrementAndGet();
+                    finishedSessions.incrementAndGet();
+                    closeQuietly(socket);
+                }
+            });
+        }
+    }
+
+    // 棋盘格子颜色对应的编号
+    static int cellCode(int color) {
+        if (color == 0) return 0;
+        for (int type = 1; type < CELL_COLORS.length; type++) {
+            if (CELL_COLORS[type] == color) return type;
+        }
+        return CELL_OTHER;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        GameServer server = new GameServer(new InetSocketAddress(port), maxSessions);
+        System.out.printf("Game server listening on port %d (%s threads, max %d sessions)%n", server.getPort(),
+                hasVirtualThreads() ? "virtual" : "platform", maxSessions);
+        server.run();
+    }
+
+    /*
+     一个客户端会话：握手后在服务器时钟上推进引擎，处理按键事件并发送增量，直到游戏结束或客户端离开。
+     */
+    private final class Session {
+        private final Socket socket;
+        private final int id;
+        private final InputStream in;
+        private final DataOutputStream out;
+        private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+        private int buffered = 0;
+        // 保护引擎和输出流：读线程处理事件、发布线程按时钟发布时都要持有。
+        // 用 ReentrantLock 而不是 synchronized，持锁阻塞在写上时虚拟线程不会钉住载体线程
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile boolean closed = false;
+
+        private GameEngine engine;
+        private long startNanos;
+        private int held = GameEngine.INPUT_NONE;
+        private long lastEventTick = 0;
+        private int rejects = 0;
+
+        // 上次发送给客户端的状态，用于计算增量
+        private byte[] sentCells;
+        private long sentBoardVersion = -1;
+        private int sentPieceType = -1;
+        private int sentRotation;
+        private int sentX;
+        private int sentY;
+        private int sentNextType;
+        private int sentHoldType;
+        private int sentScore = -1;
+        private int sentLines;
+        private int sentPieces;
+
+        Session(Socket socket, int id) {
+            this.socket = socket;
+            this.id = id;
+            InputStream input = null;
+            DataOutputStream output = null;
+            try {
+                socket.setTcpNoDelay(true);
+                input = socket.getInputStream();
+                output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), WRITE_BUFFER_SIZE));
+            } catch (IOException e) {
+                closeQuietly(socket);
+            }
+            this.in = input;
+            this.out = output;
+        }
+
+        // 读线程：握手后启动发布线程，然后阻塞读取事件，直到游戏结束或客户端离开
+
+        void run() {
+            if (in == null) return;
+            try {
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                if (!handshake()) return;
+                socket.setSoTimeout(0);
+                sessions.execute(this::publishOnClock);
+
+                while (running) {
+                    int n = in.read(readBuffer, buffered, readBuffer.length - buffered);
+                    lock.lock();
+                    try {
+                        if (closed) return;
+                        boolean open = n >= 0 && readEvents(n);
+                        if (!update() || !open) return;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } catch (IOException e) {
+                // 客户端断开，会话结束
+            } finally {
+                // 不等锁：发布线程可能正阻塞在写上，关闭连接后它会自己退出
+                closed = true;
+            }
+        }
+
+        // 发布线程：没有事件时由服务器时钟驱动，停放到下一个发布时刻再推进并发送增量
+
+        private void publishOnClock() {
+            long next = System.nanoTime();
+            try {
+                while (running) {
+                    next += PUBLISH_INTERVAL_NANOS;
+                    LockSupport.parkNanos(next - System.nanoTime());
+                    lock.lock();
+                    try {
+                        if (closed) return;
+                        if (!update()) break;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                // 游戏已经结束：唤醒阻塞在读上的读线程
+                socket.shutdownInput();
+            } catch (IOException e) {
+                closeQuietly(socket);
+            }
+        }
+
+        // 把引擎推进到服务器时钟并发送增量；游戏结束时发送 END 并返回 false（调用方持有锁）
+        private boolean update() throws IOException {
+            advanceTo(clockTick());
+            publish();
+            if (engine.isGameOver()) {
+                out.writeByte(MSG_END);
+                out.writeInt((int) engine.getTickCount());
+                out.writeInt(engine.getScore());
+                out.writeInt(engine.getLines());
+                out.writeInt(engine.getPiecesPlaced());
+                out.writeInt(Arrays.hashCode(sentCells));
+                out.flush();
+                closed = true;
+                return false;
+            }
+            out.flush();
+            return true;
+        }
+
+        // 读取 HELLO 并回复 WELCOME；种子由服务器决定，客户端不能挑选方块序列
+        private boolean handshake() throws IOException {
+            if (!fill(3) || readBuffer[0] != MSG_HELLO || readBuffer[1] != PROTOCOL_VERSION) return false;
+            int mode = readBuffer[2];
+            consume(3);
+            if (mode != PieceGenerator.MODE_RANDOM && mode != PieceGenerator.MODE_SEVEN_BAG) return false;
+
+            long seed = System.nanoTime() ^ ((long) id << 32);
+            engine = new GameEngine(PieceGenerator.create(mode, seed));
+            Board board = engine.getBoard();
+            sentCells = new byte[board.getWidth() * board.getHeight()];
+
+            out.writeByte(MSG_WELCOME);
+            out.writeInt(id);
+            out.writeLong(seed);
+            out.writeByte(engine.getGeneratorMode());
+            out.writeShort(board.getWidth());
+            out.writeShort(board.getHeight());
+            publish();
+            out.flush();
+            startNanos = System.nanoTime();
+            return true;
+        }
+
+        // 处理刚读到的 n 个字节里的事件；客户端发送 BYE 时返回 false
+        private boolean readEvents(int n) throws IOException {
+            buffered += n;
+
+            int pos = 0;
+            while (pos < buffered) {
+                int type = readBuffer[pos];
+                if (type == MSG_BYE) {
+                    return false;
+                }
+                if (type != MSG_INPUT) {
+                    throw new IOException("Unexpected message: " + type);
+                }
+                if (buffered - pos < 6) break;
+                long tick = ((readBuffer[pos + 1] & 0xFFL) << 24) | ((readBuffer[pos + 2] & 0xFF) << 16)
+                        | ((readBuffer[pos + 3] & 0xFF) << 8) | (readBuffer[pos + 4] & 0xFF);
+                int input = readBuffer[pos + 5] & 0xFF;
+                pos += 6;
+                handleInput(tick, input);
+            }
+            consume(pos);
+            return true;
+        }
+
+        // 校验一个按键事件：合法的事件先把引擎推进到它的帧，再从这一帧开始按住新的键
+        private void handleInput(long tick, int input) throws IOException {
+            int reason = 0;
+            if ((input & ~GameEngine.INPUT_ALL) != 0) {
+                reason = REJECT_BAD_INPUT;
+            } else if (tick < lastEventTick) {
+                reason = REJECT_OUT_OF_ORDER;
+            } else if (tick > clockTick() + MAX_LEAD_TICKS) {
+                reason = REJECT_TOO_EARLY;
+            }
+
+            if (reason != 0) {
+                rejectedEvents.incrementAndGet();
+                if (++rejects > MAX_REJECTS) {
+                    throw new IOException("Too many rejected events");
+                }
+                out.writeByte(MSG_REJECT);
+                out.writeByte(reason);
+                out.writeInt((int) tick);
+                return;
+            }
+
+            lastEventTick = tick;
+            advanceTo(tick);
+            held = input;
+        }
+
+        // 服务器时钟对应的帧号
+        private long clockTick() {
+            return (System.nanoTime() - startNanos) / GameEngine.TICK_NANOS;
+        }
+
+        private void advanceTo(long tick) {
+            while (engine.getTickCount() < tick && !engine.isGameOver()) {
+                engine.step(held);
+            }
+        }
+
+        // 发送自上次以来变化的部分；没有变化时不发送
+        private void publish() throws IOException {
+            Tetromino piece = engine.getCurrentTetromino();
+            int pieceType = piece == null || engine.isClearing() ? 0 : piece.getType();
+            int rotation = piece == null ? 0 : piece.getRotation();
+            int nextType = engine.getPreviewType(0);
+            int holdType = engine.getHoldType();
+
+            int flags = 0;
+            if (pieceType != sentPieceType || rotation != sentRotation || engine.getCurrentX() != sentX
+                    || engine.getCurrentY() != sentY || nextType != sentNextType
+                    || holdType != sentHoldType) {
+                flags |= DELTA_PIECE;
+            }
+            if (engine.getScore() != sentScore || engine.getLines() != sentLines
+                    || engine.getPiecesPlaced() != sentPieces) {
+                flags |= DELTA_STATS;
+            }
+            int changedRows = engine.getBoardVersion() != sentBoardVersion ? countChangedRows() : 0;
+            if (changedRows > 0) {
+                flags |= DELTA_ROWS;
+            }
+            sentBoardVersion = engine.getBoardVersion();
+            if (flags == 0) return;
+
+            out.writeByte(MSG_DELTA);
+            out.writeInt((int) engine.getTickCount());
+            out.writeByte(flags);
+            if ((flags & DELTA_PIECE) != 0) {
+                sentPieceType = pieceType;
+                sentRotation = rotation;
+                sentX = engine.getCurrentX();
+                sentY = engine.getCurrentY();
+                sentNextType = nextType;
+                sentHoldType = holdType;
+                out.writeByte(pieceType);
+                out.writeByte(rotation);
+                out.writeShort(sentX);
+                out.writeShort(sentY);
+                out.writeByte(nextType);
+                out.writeByte(holdType);
+            }
+            if ((flags & DELTA_STATS) != 0) {
+                sentScore = engine.getScore();
+                sentLines = engine.getLines();
+                sentPieces = engine.getPiecesPlaced();
+                out.writeInt(sentScore);
+                out.writeInt(sentLines);
+                out.writeByte(engine.getLevel());
+                out.writeInt(sentPieces);
+            }
+            if ((flags & DELTA_ROWS) != 0) {
+                writeChangedRows(changedRows);
+            }
+        }
+
+        private int countChangedRows() {
+            Board board = engine.getBoard();
+            int width = board.getWidth();
+            int count = 0;
+            for (int row = 0; row < board.getHeight(); row++) {
+                int base = row * width;
+                for (int col = 0; col < width; col++) {
+                    if (sentCells[base + col] != cellCode(board.getColor(row, col))) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private void writeChangedRows(int count) throws IOException {
+            Board board = engine.getBoard();
+            int width = board.getWidth();
+            out.writeShort(count);
+            for (int row = 0; row < board.getHeight(); row++) {
+                int base = row * width;
+                boolean changed = false;
+                for (int col = 0; col < width; col++) {
+                    byte code = (byte) cellCode(board.getColor(row, col));
+                    if (sentCells[base + col] != code) {
+                        sentCells[base + col] = code;
+                        changed = true;
+                    }
+                }
+                if (!changed) continue;
+                out.writeShort(row);
+                out.write(sentCells, base, width);
+            }
+        }
+
+        // 阻塞直到读缓冲区至少有 bytes 个字节；连接关闭时返回 false
+        private boolean fill(int bytes) throws IOException {
+            while (buffered < bytes) {
+                int n = in.read(readBuffer, buffered, readBuffer.length - buffered);
+                if (n < 0) return false;
+                buffered += n;
+            }
+            return true;
+        }
+
+        private void consume(int bytes) {
+            System.arraycopy(readBuffer, bytes, readBuffer, 0, buffered - bytes);
+            buffered -= bytes;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+ GameSnapshot 类：一局游戏完整状态的紧凑二进制快照，手写编解码，不使用 Java 序列化。
+ 用于菜单中的存档/继续，也可以让 AI 等模拟在同一个缓冲区里反复保存和恢复引擎状态，
+ 恢复到已有的引擎时不分配对象，一次保存或恢复只需要几微秒。
+
+ 格式（大端序）：
+   头部：魔数 "TSNP"(4 字节) | 版本(1 字节) | 生成模式(1 字节) | 棋盘宽(2 字节) | 棋盘高(2 字节)
+   引擎状态：见 GameEngine.writeState，其后是生成器状态（PieceGenerator.writeState）和棋盘（Board.writeCells）
+ 默认尺寸的棋盘一份快照通常只有一两百字节。
+ */
+public class GameSnapshot {
+    public static final int MAGIC = 0x54534E50; // "TSNP"
+    public static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 1 + 1 + 2 + 2;
+    // 引擎和生成器固定长度字段的上限
+    private static final int STATE_BYTES = 128;
+
+    private GameSnapshot() {
+    }
+
+    // 一份快照最多占用的字节数，用来分配可重复使用的缓冲区
+    public static int maxBytes(int width, int height) {
+        int cells = width * height;
+        return HEADER_BYTES + STATE_BYTES + 2 + (cells + 7) / 8 + 1 + cells + 1 + 255 * 4;
+    }
+
+    public static void write(GameEngine engine, ByteBuffer out) {
+        Board board = engine.getBoard();
+        out.putInt(MAGIC);
+        out.put((byte) VERSION);
+        out.put((byte) engine.getGeneratorMode());
+        out.putShort((short) board.getWidth());
+        out.putShort((short) board.getHeight());
+        engine.writeState(out);
+    }
+
+    public static byte[] toBytes(GameEngine engine) {
+        Board board = engine.getBoard();
+        ByteBuffer out = ByteBuffer.allocate(maxBytes(board.getWidth(), board.getHeight()));
+        write(engine, out);
+        byte[] bytes = new byte[out.position()];
+        out.flip();
+        out.get(bytes);
+        return bytes;
+    }
+
+    //读取快照并创建一个新的引擎；数据不合法时抛出 IllegalArgumentException
+
+    public static GameEngine read(ByteBuffer in) {
+        checkHeader(in);
+        int mode = in.get();
+        int width = in.getShort() & 0xFFFF;
+        int height = in.getShort() & 0xFFFF;
+        GameEngine engine = new GameEngine(PieceGenerator.create(mode, 0), width, height);
+        engine.readState(in);
+        return engine;
+    }
+
+    //把快照恢复到已有的引擎中（生成模式和棋盘尺寸必须相同），不分配新的引擎
+
+    public static void restore(GameEngine engine, ByteBuffer in) {
+        checkHeader(in);
+        Board board = engine.getBoard();
+        if (in.get() != engine.getGeneratorMode() || (in.getShort() & 0xFFFF) != board.getWidth()
+                || (in.getShort() & 0xFFFF) != board.getHeight()) {
+            throw new IllegalArgumentException("Snapshot does not match this engine");
+        }
+        engine.readState(in);
+    }
+
+    // 检查魔数和版本，之后是生成模式和棋盘尺寸
+    private static void checkHeader(ByteBuffer in) {
+        if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a snapshot");
+        }
+        int version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+        }
+    }
+
+    //保存到文件：先写临时文件再改名，中途失败不会破坏原来的存档
+
+    public static void save(GameEngine engine, Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer data = ByteBuffer.wrap(toBytes(engine));
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static GameEngine load(Path path) throws IOException {
+        try {
+            return read(ByteBuffer.wrap(Files.readAllBytes(path)));
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            throw new IOException("Corrupt snapshot file: " + path, e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ InputQueue 类：单生产者、单消费者 (SPSC) 的无锁环形队列，保存带时间戳的输入事件。
+ 生产者是 Swing 的事件分派线程（键盘监听器只负责入队，不碰引擎），
+ 消费者是游戏循环（Swing 计时器或 GameLoop 线程），在逻辑帧的边界按事件原本的时间戳取出并处理。
+ 这样即使 EDT 正忙于对话框或布局，按键也会落在它真正发生的那一帧上。
+
+ 事件和时间戳存放在两个基本类型数组里，入队出队都不分配对象。
+ 生产者写完数据后用 lazySet 发布新的 tail，消费者读到 tail 之后就能看到对应的数据；
+ 两端各自缓存对方的下标，只在队列看起来满了或空了时才重新读取对方的 volatile 下标。
+ */
+public class InputQueue {
+    private final int mask;
+    private final int[] events;
+    private final long[] times;
+
+    // tail 只由生产者写，head 只由消费者写
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private long cachedHead = 0; // 生产者看到的 head
+    private long cachedTail = 0; // 消费者看到的 tail
+
+    // capacity 必须是 2 的幂
+    public InputQueue(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.events = new int[capacity];
+        this.times = new long[capacity];
+    }
+
+    // 生产者：追加一个事件，队列已满时丢弃并返回 false
+
+    public boolean offer(int event, long nanoTime) {
+        long t = tail.get();
+        if (t - cachedHead > mask) {
+            cachedHead = head.get();
+            if (t - cachedHead > mask) return false;
+        }
+        int index = (int) t & mask;
+        events[index] = event;
+        times[index] = nanoTime;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    // 消费者：队首事件的时间戳，队列为空时返回 Long.MAX_VALUE
+    public long peekTime() {
+        long h = head.get();
+        if (h == cachedTail) {
+            cachedTail = tail.get();
+            if (h == cachedTail) return Long.MAX_VALUE;
+        }
+        return times[(int) h & mask];
+    }
+
+    // 消费者：取出队首事件，调用前必须先用 peekTime 确认队列不为空
+    public int poll() {
+        long h = head.get();
+        int event = events[(int) h & mask];
+        head.lazySet(h + 1);
+        return event;
+    }
+
+    public boolean isEmpty() {
+        return peekTime() == Long.MAX_VALUE;
+    }
+}
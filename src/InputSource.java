@@ -0,0 +1,9 @@
+/*
+ InputSource 接口：代替键盘为 GameEngine 提供输入。
+ 每个逻辑帧调用一次，返回这一帧按住的按键（GameEngine.INPUT_* 的组合）。
+ AI 玩家、脚本输入等都实现这个接口，既可以接到 GamePanel 上，也可以在无界面模式下直接驱动引擎。
+ */
+public interface InputSource {
+
+    int nextInput(GameEngine engine);
+}
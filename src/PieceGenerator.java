@@ -0,0 +1,144 @@
+import java.nio.ByteBuffer;
+
+/*
+ PieceGenerator 类：方块序列生成器的基类。
+ 每局游戏有自己的种子和随机数状态，相同种子总是生成相同的方块序列。
+ 内部用一个 int 环形缓冲区保存预先生成的方块类型，可以预览后面若干个方块。
+ 子类只需实现 generate()：随机模式见 RandomGenerator，7-bag 模式见 SevenBagGenerator。
+ */
+public abstract class PieceGenerator {
+    // 生成模式编号（写入回放和存档文件）
+    public static final int MODE_RANDOM = 0;
+    public static final int MODE_SEVEN_BAG = 1;
+
+    // 预览队列容量（2 的幂，便于用位运算取模）
+    public static final int MAX_LOOKAHEAD = 8;
+    private static final int QUEUE_MASK = MAX_LOOKAHEAD - 1;
+
+    protected final XorShiftRandom random;
+    private long seed;
+
+    // 环形缓冲区：head 指向下一个要出队的方块，size 为已生成的数量
+    private final int[] queue = new int[MAX_LOOKAHEAD];
+    private int head = 0;
+    private int size = 0;
+
+    protected PieceGenerator(long seed) {
+        this.seed = seed;
+        this.random = new XorShiftRandom(seed);
+    }
+
+    // 静态工厂方法
+
+    public static PieceGenerator sevenBag(long seed) {
+        return new SevenBagGenerator(seed);
+    }
+
+    public static PieceGenerator random(long seed) {
+        return new RandomGenerator(seed);
+    }
+
+    // 按模式编号创建生成器（用于从文件恢复）
+    public static PieceGenerator create(int mode, long seed) {
+        switch (mode) {
+            case MODE_RANDOM: return random(seed);
+            case MODE_SEVEN_BAG: return sevenBag(seed);
+            default: throw new IllegalArgumentException("Unknown generator mode: " + mode);
+        }
+    }
+
+    // 由子类实现：返回自己的模式编号
+    public abstract int getMode();
+
+    // 由子类实现：生成下一个方块类型 (1到7)
+    protected abstract int generate();
+
+    // 子类在重新播种时清空自己的内部状态
+    protected void resetState() {
+    }
+
+    // 子类写出/读回自己的内部状态（存档用），默认没有
+    protected void writeExtraState(ByteBuffer out) {
+    }
+
+    protected void readExtraState(ByteBuffer in) {
+    }
+
+    //用新的种子重新开始
+
+    public void reset(long seed) {
+        this.seed = seed;
+        random.setSeed(seed);
+        head = 0;
+        size = 0;
+        resetState();
+    }
+
+    //取出下一个方块类型
+
+    public int next() {
+        if (size == 0) {
+            return generate();
+        }
+        int type = queue[head];
+        head = (head + 1) & QUEUE_MASK;
+        size--;
+        return type;
+    }
+
+    /**
+      预览第 index 个即将出现的方块类型（0 表示下一个），不会将其取出。
+     */
+    public int peek(int index) {
+        if (index < 0 || index >= MAX_LOOKAHEAD) {
+            throw new IndexOutOfBoundsException("lookahead index: " + index);
+        }
+        while (size <= index) {
+            queue[(head + size) & QUEUE_MASK] = generate();
+            size++;
+        }
+        return queue[(head + index) & QUEUE_MASK];
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+      存档：种子、随机数状态、预览队列中已生成的方块，以及子类的内部状态。
+      读回后生成的序列与写出时完全相同。
+     */
+    public void writeState(ByteBuffer out) {
+        out.putLong(seed);
+        out.putLong(random.getState());
+        out.put((byte) size);
+        for (int i = 0; i < size; i++) {
+            out.put((byte) queue[(head + i) & QUEUE_MASK]);
+        }
+        writeExtraState(out);
+    }
+
+    //从 writeState 写出的数据恢复；数据不合法时抛出 IllegalArgumentException
+
+    public void readState(ByteBuffer in) {
+        seed = in.getLong();
+        random.setState(in.getLong());
+        int count = in.get();
+        if (count < 0 || count > MAX_LOOKAHEAD) {
+            throw new IllegalArgumentException("Bad lookahead size: " + count);
+        }
+        head = 0;
+        size = count;
+        for (int i = 0; i < count; i++) {
+            queue[i] = checkType(in.get());
+        }
+        readExtraState(in);
+    }
+
+    static int checkType(int type) {
+        if (type < 1 || type > Tetromino.TYPE_COUNT) {
+            throw new IllegalArgumentException("Bad piece type: " + type);
+        }
+        return type;
+    }
+}
@@ -0,0 +1,19 @@
+/*
+ RandomGenerator 类：纯随机模式，每个方块独立等概率地从 7 种中选出（与最初的 createRandom 行为一致）。
+ */
+public class RandomGenerator extends PieceGenerator {
+
+    public RandomGenerator(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public int getMode() {
+        return MODE_RANDOM;
+    }
+
+    @Override
+    protected int generate() {
+        return random.nextInt(Tetromino.TYPE_COUNT) + 1;
+    }
+}
@@ -0,0 +1,287 @@
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/*
+ RenderCache 类：GamePanel 绘制时用到的可复用资源，目的是让每一帧的绘制几乎不产生垃圾。
+   - 字体、线条、常用颜色是静态常量，不再每次绘制时 new
+   - 格子图集：每种颜色的格子（带斜面高光）预先画在一张图上，每种格子大小一张，绘制时直接贴图
+   - 方块贴图：预览框和暂存框里整块方块的图像，由图集里的格子拼成
+   - 文字缓存：HUD 上的分数、等级、计时器等文字保存为 GlyphVector，只在数值变化时重新排版
+ 只在绘制线程上使用（Swing 的 EDT，或主动渲染时的 GameLoop 线程），不需要同步。
+ */
+public class RenderCache {
+    // 字体
+    public static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 20);
+    public static final Font TIMER_FONT = new Font("Arial", Font.BOLD, 30);
+    public static final Font SCORE_FONT = new Font("Arial", Font.BOLD, 28);
+    public static final Font GAME_OVER_FONT = new Font("Arial", Font.BOLD, 60);
+    public static final Font FINAL_SCORE_FONT = new Font("Arial", Font.PLAIN, 32);
+
+    // 线条
+    public static final Stroke FRAME_STROKE = new BasicStroke(2);
+    public static final Stroke GRID_BORDER_STROKE = new BasicStroke(3);
+
+    // 颜色
+    public static final Color PANEL_FILL = new Color(50, 50, 50);
+    public static final Color GRID_LINE = new Color(80, 80, 80);
+    public static final Color GAME_OVER_SHADE = new Color(0, 0, 0, 180);
+    private static final Color SHINE = new Color(255, 255, 255, 90);
+
+    // 格子小于这个尺寸时不画斜面和描边，只填充颜色
+    private static final int MIN_BEVEL_SIZE = 8;
+    // 同时保留的图集数：棋盘格子、预览大格子、预览小格子
+    private static final int MAX_ATLASES = 4;
+
+    private final Atlas[] atlases = new Atlas[MAX_ATLASES];
+    private int nextEvicted = 0;
+    private final BufferedImage[][] pieceSprites = new BufferedImage[MAX_ATLASES][];
+    private final int[] pieceSpriteSizes = new int[MAX_ATLASES];
+    private GraphicsConfiguration graphicsConfiguration;
+
+    //每次绘制前调用：显示设备变化时丢弃所有图像，按新设备的像素格式重新生成
+
+    public void validate(GraphicsConfiguration gc) {
+        if (gc == graphicsConfiguration) return;
+        graphicsConfiguration = gc;
+        Arrays.fill(atlases, null);
+        for (BufferedImage[] sprites : pieceSprites) {
+            if (sprites != null) Arrays.fill(sprites, null);
+        }
+    }
+
+    //取得某种颜色、某个大小的格子图像（图集的子图，和图集共享像素）
+
+    public BufferedImage getCell(int argb, int size) {
+        return getAtlas(size).get(argb);
+    }
+
+    private Atlas getAtlas(int size) {
+        for (Atlas atlas : atlases) {
+            if (atlas != null && atlas.size == size) return atlas;
+        }
+        // 窗口缩放时棋盘格子大小会变，轮流替换最早的图集
+        for (int i = 0; i < MAX_ATLASES; i++) {
+            if (atlases[i] == null) {
+                return atlases[i] = new Atlas(size);
+            }
+        }
+        Atlas atlas = new Atlas(size);
+        atlases[nextEvicted] = atlas;
+        nextEvicted = (nextEvicted + 1) % MAX_ATLASES;
+        return atlas;
+    }
+
+    //取得某种方块（旋转状态 0）的贴图，只包含方块实际占用的格子，外面透明
+
+    public BufferedImage getPieceSprite(int type, int cellSize) {
+        int slot = -1;
+        for (int i = 0; i < MAX_ATLASES; i++) {
+            if (pieceSprites[i] != null && pieceSpriteSizes[i] == cellSize) {
+                slot = i;
+                break;
+            }
+            if (pieceSprites[i] == null && slot < 0) slot = i;
+        }
+        if (slot < 0) slot = 0;
+        if (pieceSprites[slot] == null || pieceSpriteSizes[slot] != cellSize) {
+            pieceSprites[slot] = new BufferedImage[Tetromino.TYPE_COUNT + 1];
+            pieceSpriteSizes[slot] = cellSize;
+        }
+
+        BufferedImage[] sprites = pieceSprites[slot];
+        if (sprites[type] == null) {
+            sprites[type] = createPieceSprite(Tetromino.of(type, 0), cellSize);
+        }
+        return sprites[type];
+    }
+
+    private BufferedImage createPieceSprite(Tetromino piece, int size) {
+        int[][] shape = piece.getShape();
+        int minRow = shape.length, maxRow = -1, minCol = shape.length, maxCol = -1;
+        for (int r = 0; r < shape.length; r++) {
+            for (int c = 0; c < shape.length; c++) {
+                if (shape[r][c] == 1) {
+                    minRow = Math.min(minRow, r);
+                    maxRow = Math.max(maxRow, r);
+                    minCol = Math.min(minCol, c);
+                    maxCol = Math.max(maxCol, c);
+                }
+            }
+        }
+
+        BufferedImage sprite = createImage((maxCol - minCol + 1) * size, (maxRow - minRow + 1) * size);
+        BufferedImage cell = getCell(piece.getColor().getRGB(), size);
+        Graphics2D g2d = sprite.createGraphics();
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                if (shape[r][c] == 1) {
+                    g2d.drawImage(cell, (c - minCol) * size, (r - minRow) * size, null);
+                }
+            }
+        }
+        g2d.dispose();
+        return sprite;
+    }
+
+    private BufferedImage createImage(int width, int height) {
+        return graphicsConfiguration != null
+                ? graphicsConfiguration.createCompatibleImage(width, height, Transparency.TRANSLUCENT)
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    //画一个格子：底色、左上亮边、右下暗边、左上角的高光和黑色描边
+
+    private static void paintCell(Graphics2D g2d, Color color, int x, int size) {
+        g2d.setColor(color);
+        g2d.fillRect(x, 0, size, size);
+        if (size < MIN_BEVEL_SIZE) return;
+
+        int bevel = Math.max(1, size / 8);
+        g2d.setColor(color.brighter());
+        g2d.fillRect(x, 0, size, bevel);
+        g2d.fillRect(x, 0, bevel, size);
+        g2d.setColor(color.darker());
+        g2d.fillRect(x, size - bevel, size, bevel);
+        g2d.fillRect(x + size - bevel, 0, bevel, size);
+
+        g2d.setColor(SHINE);
+        g2d.fillRect(x + bevel, bevel, size / 3, size / 6);
+
+        g2d.setColor(Color.BLACK);
+        g2d.drawRect(x, 0, size - 1, size - 1);
+    }
+
+    /*
+     一种格子大小的图集：所有颜色的格子横向排成一行，按颜色的 ARGB 值查找。
+     出现新颜色（例如存档里的自定义颜色）时追加；图集满了就按两倍容量重画。
+     */
+    private final class Atlas {
+        private final int size;
+        private int[] colors = new int[Tetromino.TYPE_COUNT + 2];
+        private BufferedImage[] cells = new BufferedImage[colors.length];
+        private int count = 0;
+        private BufferedImage image;
+        private int lastColor;
+        private BufferedImage lastCell;
+
+        Atlas(int size) {
+            this.size = size;
+            // 预先放入所有方块颜色，常见情况下不会再扩容
+            for (int type = 1; type <= Tetromino.TYPE_COUNT; type++) {
+                get(Tetromino.of(type, 0).getColor().getRGB());
+            }
+        }
+
+        BufferedImage get(int argb) {
+            // 同一种颜色常常连着出现（同一个方块的几个格子）
+            if (lastCell != null && lastColor == argb) return lastCell;
+            int index = indexOf(argb);
+            if (index < 0) {
+                index = add(argb);
+            }
+            lastColor = argb;
+            lastCell = cells[index];
+            return lastCell;
+        }
+
+        private int indexOf(int argb) {
+            for (int i = 0; i < count; i++) {
+                if (colors[i] == argb) return i;
+            }
+            return -1;
+        }
+
+        private int add(int argb) {
+            if (image == null || count == colors.length) {
+                int capacity = image == null ? colors.length : colors.length * 2;
+                colors = Arrays.copyOf(colors, capacity);
+                cells = new BufferedImage[capacity];
+                image = createImage(capacity * size, size);
+                for (int i = 0; i < count; i++) {
+                    render(i);
+                }
+            }
+            colors[count] = argb;
+            render(count);
+            return count++;
+        }
+
+        private void render(int index) {
+            Graphics2D g2d = image.createGraphics();
+            paintCell(g2d, new Color(colors[index], true), index * size, size);
+            g2d.dispose();
+            cells[index] = image.getSubimage(index * size, 0, size, size);
+            lastCell = null;
+        }
+    }
+
+    /*
+     一行缓存的 HUD 文字：数值不变时直接复用上次排版好的 GlyphVector，
+     变化时才生成新的字符串和字形。宽度和基线位置也一起缓存，方便右对齐和居中。
+     */
+    public static final class TextLine {
+        private final Font font;
+        private final LongFunction<String> format;
+        private long value;
+        private GlyphVector glyphs;
+        private FontRenderContext renderContext;
+        private float width;
+        private float ascent;
+        private float height;
+
+        public TextLine(Font font, LongFunction<String> format) {
+            this.font = font;
+            this.format = format;
+        }
+
+        //按 value 取得排版好的文字；字体渲染上下文改变（例如抗锯齿设置不同）时也会重建
+
+        public GlyphVector get(Graphics2D g2d, long value) {
+            FontRenderContext frc = g2d.getFontRenderContext();
+            if (glyphs == null || value != this.value || !frc.equals(renderContext)) {
+                String text = format.apply(value);
+                glyphs = font.createGlyphVector(frc, text);
+                renderContext = frc;
+                this.value = value;
+                width = (float) glyphs.getLogicalBounds().getWidth();
+                LineMetrics metrics = font.getLineMetrics(text, frc);
+                ascent = metrics.getAscent();
+                height = metrics.getHeight();
+            }
+            return glyphs;
+        }
+
+        // 以下数值对应最近一次 get 的结果
+
+        public float getWidth() {
+            return width;
+        }
+
+        public float getAscent() {
+            return ascent;
+        }
+
+        public float getHeight() {
+            return height;
+        }
+    }
+
+    // 把秒数格式化为 HH:MM:SS，不使用 String.format
+    public static String formatClock(long totalSeconds) {
+        long hours = totalSeconds / 3600;
+        int minutes = (int) (totalSeconds / 60 % 60);
+        int seconds = (int) (totalSeconds % 60);
+        StringBuilder sb = new StringBuilder(8);
+        if (hours < 10) sb.append('0');
+        sb.append(hours).append(':');
+        if (minutes < 10) sb.append('0');
+        sb.append(minutes).append(':');
+        if (seconds < 10) sb.append('0');
+        return sb.append(seconds).toString();
+    }
+}
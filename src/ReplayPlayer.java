@@ -0,0 +1,203 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ ReplayPlayer 类：读取 ReplayWriter 录制的回放文件，并驱动一个 GameEngine 重演。
+ 可以按真实时间播放（GamePanel 每个逻辑帧调用一次 step），
+ 也可以在无界面模式下全速快进，用来验证文件里记录的最终分数是否可信。
+ */
+public class ReplayPlayer {
+    private final int generatorMode;
+    private final long seed;
+    private final int boardWidth;
+    private final int boardHeight;
+
+    // 输入事件：在第 eventTicks[i] 个逻辑帧之前，按键状态变为 eventInputs[i]
+    private long[] eventTicks = new long[64];
+    private int[] eventInputs = new int[64];
+    private int eventCount = 0;
+
+    private final long finalTick;
+    private final int finalScore;
+    private final boolean complete; // 文件是否有完整的结尾
+
+    // 播放进度
+    private int nextEvent = 0;
+    private int currentInput = GameEngine.INPUT_NONE;
+
+    private ReplayPlayer(ByteBuffer data) throws IOException {
+        if (data.remaining() < ReplayWriter.HEADER_BYTES || data.getInt() != ReplayWriter.MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        int version = data.get();
+        if (version != ReplayWriter.VERSION) {
+            throw new IOException("Unsupported replay version: " + version);
+        }
+        generatorMode = data.get();
+        seed = data.getLong();
+        boardWidth = data.getShort() & 0xFFFF;
+        boardHeight = data.getShort() & 0xFFFF;
+        // 头部在这里校验，createEngine 之后不会再因为文件内容抛出非受检异常
+        if (generatorMode != PieceGenerator.MODE_RANDOM && generatorMode != PieceGenerator.MODE_SEVEN_BAG) {
+            throw new IOException("Corrupt replay: unknown generator mode " + generatorMode);
+        }
+        if (boardWidth == 0 || boardWidth > Board.MAX_WIDTH || boardHeight == 0 || boardHeight > Board.MAX_HEIGHT) {
+            throw new IOException("Corrupt replay: unsupported board size " + boardWidth + "x" + boardHeight);
+        }
+
+        long tick = 0;
+        long endTick = -1;
+        int endScore = 0;
+        while (data.hasRemaining()) {
+            tick += getVarint(data);
+            long value = getVarint(data);
+            if (value == ReplayWriter.TAG_END) {
+                endTick = tick;
+                endScore = (int) getVarint(data);
+                break;
+            }
+            long input = value >>> 1;
+            if ((input & ~GameEngine.INPUT_ALL) != 0) {
+                throw new IOException("Corrupt replay: bad input " + input + " at tick " + tick);
+            }
+            addEvent(tick, (int) input);
+        }
+
+        complete = endTick >= 0;
+        finalTick = complete ? endTick : tick;
+        finalScore = endScore;
+    }
+
+    //读取整个回放文件
+
+    public static ReplayPlayer load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // 读满为止
+            }
+            data.flip();
+            return new ReplayPlayer(data);
+        } catch (RuntimeException e) {
+            // 文件被截断时 varint 读取会越界
+            throw new IOException("Corrupt replay file: " + path, e);
+        }
+    }
+
+    // 创建一个与录制时相同种子、相同生成模式的新引擎
+    public GameEngine createEngine() {
+        rewind();
+        return new GameEngine(PieceGenerator.create(generatorMode, seed), boardWidth, boardHeight);
+    }
+
+    public void rewind() {
+        nextEvent = 0;
+        currentInput = GameEngine.INPUT_NONE;
+    }
+
+    /**
+      重演一个逻辑帧：先应用这一帧之前记录的按键变化，再推进引擎。
+      回放已经结束时返回 false。
+     */
+    public boolean step(GameEngine engine) {
+        if (isFinished(engine)) return false;
+
+        long tick = engine.getTickCount();
+        while (nextEvent < eventCount && eventTicks[nextEvent] <= tick) {
+            currentInput = eventInputs[nextEvent++];
+            engine.applyInput(currentInput);
+        }
+        engine.step(currentInput);
+        return true;
+    }
+
+    public boolean isFinished(GameEngine engine) {
+        return engine.isGameOver() || engine.getTickCount() >= finalTick;
+    }
+
+    //无界面全速快进，返回重算得到的最终分数
+
+    public int fastForward(GameEngine engine) {
+        while (step(engine)) {
+            // 全速重算
+        }
+        return engine.getScore();
+    }
+
+    //验证回放：重算的分数和帧数必须与文件结尾记录的一致
+
+    public boolean verify() {
+        if (!complete) return false;
+        GameEngine engine = createEngine();
+        int score = fastForward(engine);
+        return score == finalScore && engine.getTickCount() == finalTick;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getGeneratorMode() {
+        return generatorMode;
+    }
+
+    public int getFinalScore() {
+        return finalScore;
+    }
+
+    public long getFinalTick() {
+        return finalTick;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    private void addEvent(long tick, int input) {
+        if (eventCount == eventTicks.length) {
+            eventTicks = Arrays.copyOf(eventTicks, eventCount * 2);
+            eventInputs = Arrays.copyOf(eventInputs, eventCount * 2);
+        }
+        eventTicks[eventCount] = tick;
+        eventInputs[eventCount] = input;
+        eventCount++;
+    }
+
+    private static long getVarint(ByteBuffer data) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    // 命令行验证：java ReplayPlayer <回放文件>...
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java ReplayPlayer <replay file>...");
+            return;
+        }
+        int failures = 0;
+        for (String arg : args) {
+            ReplayPlayer replay = load(Paths.get(arg));
+            long start = System.nanoTime();
+            boolean ok = replay.verify();
+            long micros = (System.nanoTime() - start) / 1000;
+            System.out.printf("%s  score=%d  ticks=%d  %s  (%d us)%n", arg, replay.getFinalScore(),
+                    replay.getFinalTick(), ok ? "OK" : "MISMATCH", micros);
+            if (!ok) failures++;
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}
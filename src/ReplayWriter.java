@@ -0,0 +1,120 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ ReplayWriter 类：把一局游戏录制成紧凑的二进制输入日志。
+ 文件只保存种子和“按键状态变化”，游戏过程可以由 GameEngine 完整重算出来。
+
+ 文件格式（所有变长整数都是无符号 LEB128 varint）：
+   头部：  魔数 "TRPL"(4 字节) | 版本(1 字节) | 生成模式(1 字节) | 种子(8 字节) | 棋盘宽(2 字节) | 棋盘高(2 字节)
+   输入帧：varint(距上一帧的逻辑帧差) | varint(按键状态 << 1)
+   结尾：  varint(距上一帧的逻辑帧差) | varint(1) | varint(最终分数)
+ 一次按键变化通常只占 2 个字节。
+ */
+public class ReplayWriter implements Closeable {
+    public static final int MAGIC = 0x5452504C; // "TRPL"
+    public static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 + 1 + 1 + 8 + 2 + 2;
+    static final int TAG_END = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_FRAME_BYTES = 3 * 5; // 三个 varint 的最大长度
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long lastTick = 0;
+    private boolean failed = false;
+    private boolean finished = false;
+
+    public ReplayWriter(Path path, int generatorMode, long seed, int boardWidth, int boardHeight) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) generatorMode);
+        buffer.putLong(seed);
+        buffer.putShort((short) boardWidth);
+        buffer.putShort((short) boardHeight);
+    }
+
+    /**
+      记录一次按键状态变化：在第 tick 个逻辑帧之前，按键状态变为 input。
+      写入失败时只打印一次错误并停止录制，不影响游戏本身。
+     */
+    public void record(long tick, int input) {
+        if (failed || finished) return;
+        ensureSpace();
+        if (failed) return;
+        putVarint(tick - lastTick);
+        putVarint((long) input << 1);
+        lastTick = tick;
+    }
+
+    //写入结尾（最终逻辑帧数和分数）并关闭文件
+
+    public void finish(long finalTick, int finalScore) throws IOException {
+        if (finished) return;
+        if (!failed) {
+            ensureSpace();
+        }
+        if (!failed) {
+            putVarint(finalTick - lastTick);
+            putVarint(TAG_END);
+            putVarint(finalScore);
+        }
+        finished = true;
+        close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!failed) {
+                flush();
+            }
+        } finally {
+            finished = true;
+            channel.close();
+        }
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    private void ensureSpace() {
+        if (buffer.remaining() >= MAX_FRAME_BYTES) return;
+        try {
+            flush();
+        } catch (IOException e) {
+            failed = true;
+            System.err.println("Replay recording stopped: " + e);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
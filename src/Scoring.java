@@ -0,0 +1,119 @@
+import java.nio.ByteBuffer;
+
+/*
+ Scoring 类：标准计分规则。每次锁定时由 GameEngine 传入这次的消行数、T-spin 判定和当前等级，
+ 增量地维护连击 (combo) 和背靠背 (back-to-back) 状态并返回得分，不需要重新扫描棋盘。
+
+   消行：      单行 100、双行 300、三行 500、四行 800，乘以等级
+   T-spin：    无消行 400、单行 800、双行 1200、三行 1600；Mini 无消行 100、单行 200、双行 400，乘以等级
+   背靠背：    连续两次“困难”消行（四行或带消行的 T-spin）时，后一次得分乘以 1.5；
+               普通消行会中断背靠背，不消行的锁定不影响
+   连击：      连续每次锁定都消行时，第 n 次连击额外得 50 * n * 等级；不消行的锁定中断连击
+   下落：      软降每格 1 分，硬降每格 2 分（不乘等级）
+ */
+public class Scoring {
+    public static final int SPIN_NONE = 0;
+    public static final int SPIN_MINI = 1;
+    public static final int SPIN_FULL = 2;
+
+    public static final int SOFT_DROP_POINTS = 1;
+    public static final int HARD_DROP_POINTS = 2;
+
+    private static final int[] LINE_SCORES = {0, 100, 300, 500, 800};
+    private static final int[] T_SPIN_SCORES = {400, 800, 1200, 1600};
+    private static final int[] T_SPIN_MINI_SCORES = {100, 200, 400};
+    private static final int COMBO_SCORE = 50;
+
+    private int combo = -1; // -1 表示没有连击；第一次消行为 0，之后每次连续消行加一
+    private boolean backToBack = false; // 上一次消行是否为困难消行
+
+    // 最近一次锁定的结果，供界面显示
+    private int lastLines = 0;
+    private int lastSpin = SPIN_NONE;
+    private boolean lastBackToBack = false;
+
+    public void reset() {
+        combo = -1;
+        backToBack = false;
+        lastLines = 0;
+        lastSpin = SPIN_NONE;
+        lastBackToBack = false;
+    }
+
+    //一个方块锁定：lines 为这次消除的行数，spin 为 SPIN_*，level 为消行前的等级；返回得分
+
+    public int onLock(int lines, int spin, int level) {
+        int base;
+        if (spin == SPIN_FULL) {
+            base = T_SPIN_SCORES[Math.min(lines, T_SPIN_SCORES.length - 1)];
+        } else if (spin == SPIN_MINI) {
+            base = T_SPIN_MINI_SCORES[Math.min(lines, T_SPIN_MINI_SCORES.length - 1)];
+        } else {
+            base = LINE_SCORES[Math.min(lines, LINE_SCORES.length - 1)];
+        }
+        int points = base * level;
+
+        lastLines = lines;
+        lastSpin = spin;
+        lastBackToBack = false;
+        if (lines == 0) {
+            combo = -1;
+            return points;
+        }
+
+        boolean difficult = lines >= 4 || spin != SPIN_NONE;
+        if (difficult && backToBack) {
+            points += points / 2;
+            lastBackToBack = true;
+        }
+        backToBack = difficult;
+
+        combo++;
+        points += COMBO_SCORE * combo * level;
+        return points;
+    }
+
+    // 软降和硬降的得分
+    public static int dropPoints(int cells, boolean hardDrop) {
+        return cells * (hardDrop ? HARD_DROP_POINTS : SOFT_DROP_POINTS);
+    }
+
+    void writeState(ByteBuffer out) {
+        out.putShort((short) combo);
+        out.put((byte) ((backToBack ? 1 : 0) | (lastBackToBack ? 2 : 0)));
+        out.put((byte) lastLines);
+        out.put((byte) lastSpin);
+    }
+
+    void readState(ByteBuffer in) {
+        combo = in.getShort();
+        int flags = in.get();
+        backToBack = (flags & 1) != 0;
+        lastBackToBack = (flags & 2) != 0;
+        lastLines = in.get();
+        lastSpin = in.get();
+        if (combo < -1 || lastLines < 0 || lastSpin < SPIN_NONE || lastSpin > SPIN_FULL) {
+            throw new IllegalArgumentException("Bad scoring state");
+        }
+    }
+
+    public int getCombo() {
+        return combo;
+    }
+
+    public boolean isBackToBack() {
+        return backToBack;
+    }
+
+    public int getLastLines() {
+        return lastLines;
+    }
+
+    public int getLastSpin() {
+        return lastSpin;
+    }
+
+    public boolean wasLastBackToBack() {
+        return lastBackToBack;
+    }
+}
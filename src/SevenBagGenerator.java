@@ -0,0 +1,71 @@
+import java.nio.ByteBuffer;
+
+/*
+ SevenBagGenerator 类：7-bag 模式。
+ 把 7 种方块装进一个“袋子”并打乱顺序依次取出，取完后再装一袋。
+ 这样任意 7 个连续的袋内方块都各出现一次，不会长时间等不到某种方块。
+ */
+public class SevenBagGenerator extends PieceGenerator {
+    private final int[] bag = new int[Tetromino.TYPE_COUNT];
+    private int bagIndex = Tetromino.TYPE_COUNT; // 等于袋子大小表示需要重新装袋
+
+    public SevenBagGenerator(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public int getMode() {
+        return MODE_SEVEN_BAG;
+    }
+
+    @Override
+    protected int generate() {
+        if (bagIndex >= bag.length) {
+            refill();
+        }
+        return bag[bagIndex++];
+    }
+
+    // 重新装袋并用 Fisher-Yates 洗牌
+    private void refill() {
+        for (int i = 0; i < bag.length; i++) {
+            bag[i] = i + 1;
+        }
+        for (int i = bag.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = bag[i];
+            bag[i] = bag[j];
+            bag[j] = tmp;
+        }
+        bagIndex = 0;
+    }
+
+    @Override
+    protected void resetState() {
+        bagIndex = bag.length;
+    }
+
+    // 袋子里的方块和已经取到的位置
+    @Override
+    protected void writeExtraState(ByteBuffer out) {
+        for (int type : bag) {
+            out.put((byte) type);
+        }
+        out.put((byte) bagIndex);
+    }
+
+    @Override
+    protected void readExtraState(ByteBuffer in) {
+        for (int i = 0; i < bag.length; i++) {
+            bag[i] = in.get();
+        }
+        bagIndex = in.get();
+        if (bagIndex < 0 || bagIndex > bag.length) {
+            throw new IllegalArgumentException("Bad bag index: " + bagIndex);
+        }
+        // 还没取完时袋子里必须是合法的方块
+        for (int i = bagIndex; i < bag.length; i++) {
+            checkType(bag[i]);
+        }
+    }
+}
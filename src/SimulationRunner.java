@@ -0,0 +1,272 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ SimulationRunner 类：无界面的大规模并行模拟，用于调整计分和难度参数。
+ 在所有 CPU 核上同时运行 N 局互相独立的游戏，每局有自己的种子和操作策略，
+ 最后汇总分数、消行数、方块数、游戏时长和每秒局数。
+ 每个工作线程持有自己的引擎、策略和统计数据，线程之间只共享一个领取任务用的计数器，
+ 因此吞吐量随核数线性增长。
+
+ 用法：java SimulationRunner [局数] [策略] [线程数] [起始种子]
+ 策略：random（随机按键）、scripted（固定按键脚本）、ai 或 ai:深度（内置 AI，单线程搜索）
+ 生成器模式与游戏相同，用 -Dtetris.randomizer=bag 切换为 7-bag；-Dtetris.board=宽x高 指定棋盘尺寸。
+ */
+public class SimulationRunner {
+    // 每次从共享计数器领取的局数，减少线程间的竞争
+    private static final int CHUNK = 64;
+    // 单局最长帧数，防止策略永远不输导致模拟无法结束
+    private static final long MAX_TICKS = 10_000_000L;
+    // 进度输出间隔（毫秒）
+    private static final long PROGRESS_INTERVAL = 5000;
+
+    private final long games;
+    private final String policy;
+    private final int threads;
+    private final long baseSeed;
+    private final boolean sevenBag;
+
+    private final AtomicLong nextGame = new AtomicLong();
+    private final AtomicLong finishedGames = new AtomicLong();
+
+    public SimulationRunner(long games, String policy, int threads, long baseSeed, boolean sevenBag) {
+        if (games <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("games and threads must be positive");
+        }
+        createPolicy(policy, 0); // 提前检查策略名
+        this.games = games;
+        this.policy = policy;
+        this.threads = threads;
+        this.baseSeed = baseSeed;
+        this.sevenBag = sevenBag;
+    }
+
+    // 按名字和种子创建一局的操作策略
+    static InputSource createPolicy(String name, long seed) {
+        if (name.equals("random")) {
+            return new RandomInput(seed);
+        }
+        if (name.equals("scripted")) {
+            return new ScriptedInput(ScriptedInput.DEFAULT_SCRIPT);
+        }
+        if (name.equals("ai")) {
+            return new AutoPlayer(1, null);
+        }
+        if (name.startsWith("ai:")) {
+            return new AutoPlayer(Integer.parseInt(name.substring(3)), null);
+        }
+        throw new IllegalArgumentException("Unknown policy: " + name);
+    }
+
+    //运行全部模拟并返回汇总统计，阻塞直到所有线程结束
+
+    public Stats run() throws InterruptedException {
+        Stats[] results = new Stats[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            Stats stats = new Stats();
+            results[i] = stats;
+            workers[i] = new Thread(() -> work(stats), "tetris-sim-" + i);
+            workers[i].start();
+        }
+
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                worker.join(PROGRESS_INTERVAL);
+                if (worker.isAlive()) {
+                    long done = finishedGames.get();
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    System.err.printf("  %d / %d games (%.0f games/s)%n", done, games, done / seconds);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Stats total = new Stats();
+        for (Stats stats : results) {
+            total.merge(stats);
+        }
+        total.elapsedNanos = elapsed;
+        return total;
+    }
+
+    // 工作线程：分批领取局号，用自己的引擎逐局运行，结果只写入自己的 Stats
+    private void work(Stats stats) {
+        GameEngine engine = null;
+        while (true) {
+            long first = nextGame.getAndAdd(CHUNK);
+            if (first >= games) return;
+            long last = Math.min(games, first + CHUNK);
+
+            for (long game = first; game < last; game++) {
+                long seed = baseSeed + game;
+                if (engine == null) {
+                    PieceGenerator generator = sevenBag ? PieceGenerator.sevenBag(seed) : PieceGenerator.random(seed);
+                    engine = GameEngine.withConfiguredBoard(generator);
+                } else {
+                    engine.reset(seed);
+                }
+
+                InputSource input = createPolicy(policy, seed);
+                while (!engine.isGameOver() && engine.getTickCount() < MAX_TICKS) {
+                    engine.step(input.nextInput(engine));
+                }
+                stats.add(engine);
+            }
+            finishedGames.addAndGet(last - first);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 10_000;
+        String policy = args.length > 1 ? args[1] : "random";
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        boolean sevenBag = "bag".equalsIgnoreCase(System.getProperty("tetris.randomizer"));
+
+        SimulationRunner runner = new SimulationRunner(games, policy, threads, seed, sevenBag);
+        Stats stats = runner.run();
+
+        System.out.printf("policy=%s generator=%s threads=%d seed=%d%n", policy, sevenBag ? "bag" : "random",
+                threads, seed);
+        stats.print();
+    }
+
+    /*
+     一组游戏的汇总统计。每个线程各有一份，结束后再合并，运行期间无需同步。
+     */
+    public static class Stats {
+        private long games;
+        private long totalScore;
+        private long totalLines;
+        private long totalPieces;
+        private long totalTicks;
+        private long totalEroded;
+        private long totalFinalHoles; // 结束时棋盘上的空洞数
+        private long maxScore = Long.MIN_VALUE;
+        private long minScore = Long.MAX_VALUE;
+        private long maxLines;
+        private long longestGame;
+        private double sumSquaredScore; // 用于计算标准差
+        private long elapsedNanos;
+        private final BoardFeatures features = new BoardFeatures();
+
+        void add(GameEngine engine) {
+            long score = engine.getScore();
+            games++;
+            totalScore += score;
+            totalLines += engine.getLines();
+            totalPieces += engine.getPiecesPlaced();
+            totalTicks += engine.getTickCount();
+            totalEroded += engine.getErodedCells();
+            totalFinalHoles += features.compute(engine.getBoard()).getHoles();
+            maxScore = Math.max(maxScore, score);
+            minScore = Math.min(minScore, score);
+            maxLines = Math.max(maxLines, engine.getLines());
+            longestGame = Math.max(longestGame, engine.getTickCount());
+            sumSquaredScore += (double) score * score;
+        }
+
+        void merge(Stats other) {
+            games += other.games;
+            totalScore += other.totalScore;
+            totalLines += other.totalLines;
+            totalPieces += other.totalPieces;
+            totalTicks += other.totalTicks;
+            totalEroded += other.totalEroded;
+            totalFinalHoles += other.totalFinalHoles;
+            maxScore = Math.max(maxScore, other.maxScore);
+            minScore = Math.min(minScore, other.minScore);
+            maxLines = Math.max(maxLines, other.maxLines);
+            longestGame = Math.max(longestGame, other.longestGame);
+            sumSquaredScore += other.sumSquaredScore;
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public double getMeanScore() {
+            return games == 0 ? 0 : (double) totalScore / games;
+        }
+
+        public double getScoreStdDev() {
+            if (games == 0) return 0;
+            double mean = getMeanScore();
+            return Math.sqrt(Math.max(0, sumSquaredScore / games - mean * mean));
+        }
+
+        public double getGamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : games / (elapsedNanos / 1e9);
+        }
+
+        public void print() {
+            double n = Math.max(1, games);
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("games           %d in %.2f s (%.0f games/s, %.0f ticks/s)%n", games, seconds,
+                    getGamesPerSecond(), seconds == 0 ? 0 : totalTicks / seconds);
+            System.out.printf("score           mean %.1f  sd %.1f  min %d  max %d%n", getMeanScore(),
+                    getScoreStdDev(), games == 0 ? 0 : minScore, games == 0 ? 0 : maxScore);
+            System.out.printf("lines           mean %.2f  max %d%n", totalLines / n, maxLines);
+            System.out.printf("pieces placed   mean %.1f%n", totalPieces / n);
+            System.out.printf("eroded cells    mean %.1f%n", totalEroded / n);
+            System.out.printf("final holes     mean %.1f%n", totalFinalHoles / n);
+            System.out.printf("game length     mean %.0f ticks (%.1f s)  max %d ticks%n", totalTicks / n,
+                    totalTicks / n / GameEngine.TICKS_PER_SECOND, longestGame);
+        }
+    }
+
+    /*
+     随机策略：每隔几帧随机换一次按住的键，模拟毫无章法的玩家。
+     */
+    private static class RandomInput implements InputSource {
+        private static final int HOLD_TICKS = 8;
+        private static final int[] CHOICES = {
+                GameEngine.INPUT_LEFT, GameEngine.INPUT_RIGHT, GameEngine.INPUT_ROTATE,
+                GameEngine.INPUT_DROP, GameEngine.INPUT_NONE, GameEngine.INPUT_NONE
+        };
+
+        private final XorShiftRandom random;
+        private int held = GameEngine.INPUT_NONE;
+        private int ticks = 0;
+
+        RandomInput(long seed) {
+            this.random = new XorShiftRandom(seed ^ 0x5DEECE66DL);
+        }
+
+        @Override
+        public int nextInput(GameEngine engine) {
+            if (ticks++ % HOLD_TICKS == 0) {
+                held = CHOICES[random.nextInt(CHOICES.length)];
+            }
+            return held;
+        }
+    }
+
+    /*
+     脚本策略：循环播放一段固定的按键序列，与局面无关，每局都完全相同。
+     */
+    private static class ScriptedInput implements InputSource {
+        // 每个元素按住一帧：旋转、左移两次、硬降、旋转两次、右移三次、硬降
+        static final int[] DEFAULT_SCRIPT = {
+                GameEngine.INPUT_ROTATE, 0, GameEngine.INPUT_LEFT, 0, GameEngine.INPUT_LEFT, 0,
+                GameEngine.INPUT_DROP, 0, GameEngine.INPUT_ROTATE, 0, GameEngine.INPUT_ROTATE, 0,
+                GameEngine.INPUT_RIGHT, 0, GameEngine.INPUT_RIGHT, 0, GameEngine.INPUT_RIGHT, 0,
+                GameEngine.INPUT_DROP, 0
+        };
+
+        private final int[] script;
+        private int position = 0;
+
+        ScriptedInput(int[] script) {
+            this.script = script;
+        }
+
+        @Override
+        public int nextInput(GameEngine engine) {
+            int input = script[position];
+            position = (position + 1) % script.length;
+            return input;
+        }
+    }
+}
@@ -0,0 +1,467 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ StatsStore 类：本地的成绩和统计数据库。每局结束的记录追加到一个内存映射的定长记录日志里，
+ 追加只写一条记录和文件头，和已有记录的数量无关。
+
+ 文件格式（大端序）：
+   文件头 HEADER_BYTES 字节：
+     魔数 "TSTS"(4) | 版本(2) | 记录长度(2) | 记录数(8) | 校验和(8)
+     每种生成模式：局数(8) | 总行数(8) | 总游戏时间毫秒(8) | 前 TOP_N 名的记录编号(TOP_N x 4，-1 为空)
+   记录 RECORD_BYTES 字节：
+     结束时间(8) | 种子(8) | 分数(4) | 行数(4) | 方块数(4) | 游戏时间毫秒(4) | 逻辑帧数(8)
+     | 生成模式(1) | 标志(1) | 棋盘宽(2) | 棋盘高(2) | 回放文件名(REPLAY_NAME_BYTES，ASCII，不足补 0)
+
+ 排行榜和累计统计保存在文件头里，启动时只读文件头和前几名的记录，和记录总数无关。
+ 校验和不对（例如写到一半时进程被杀）时扫描全部记录重建文件头。
+ 文件满了之后容量翻倍（至少增加 GROWTH_RECORDS 条）并重新映射，所以追加的均摊开销是 O(1)。
+ 旧的映射要等垃圾回收才会解除，翻倍扩展时同时存在的映射不超过 log2(MAX_RECORDS / GROWTH_RECORDS) + 1 个，
+ 总大小不超过最终映射的两倍。
+ */
+public class StatsStore {
+    public static final int MAGIC = 0x54535453; // "TSTS"
+    public static final int VERSION = 1;
+    public static final int TOP_N = 10;
+    public static final int MODE_COUNT = 2; // PieceGenerator.MODE_RANDOM、MODE_SEVEN_BAG
+
+    // 记录标志：这一局是正常结束（Game Over）还是中途退出
+    public static final int FLAG_GAME_OVER = 1;
+
+    // 记录内各字段的偏移
+    private static final int FINISHED_AT_OFFSET = 0;
+    private static final int SEED_OFFSET = 8;
+    private static final int SCORE_OFFSET = 16;
+    private static final int LINES_OFFSET = 20;
+    private static final int PIECES_OFFSET = 24;
+    private static final int MILLIS_OFFSET = 28;
+    private static final int TICKS_OFFSET = 32;
+    private static final int MODE_OFFSET = 40;
+    private static final int FLAGS_OFFSET = 41;
+    private static final int WIDTH_OFFSET = 42;
+    private static final int HEIGHT_OFFSET = 44;
+    private static final int REPLAY_NAME_OFFSET = 46;
+    private static final int REPLAY_NAME_BYTES = 40;
+    static final int RECORD_BYTES = REPLAY_NAME_OFFSET + REPLAY_NAME_BYTES;
+
+    // 文件头内各字段的偏移
+    private static final int VERSION_OFFSET = 4;
+    private static final int RECORD_BYTES_OFFSET = 6;
+    private static final int COUNT_OFFSET = 8;
+    private static final int CHECKSUM_OFFSET = 16;
+    private static final int MODES_OFFSET = 24;
+    // 每种生成模式的文件头内各字段的偏移
+    private static final int MODE_GAMES_OFFSET = 0;
+    private static final int MODE_LINES_OFFSET = 8;
+    private static final int MODE_MILLIS_OFFSET = 16;
+    private static final int MODE_TOP_OFFSET = 24;
+    private static final int MODE_HEADER_BYTES = MODE_TOP_OFFSET + TOP_N * 4;
+    static final int HEADER_BYTES = 512;
+    private static final long GROWTH_RECORDS = 16384;
+    // 单个映射最大 2GB，约两千四百万局
+    static final long MAX_RECORDS = (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES;
+
+    private static StatsStore defaultStore;
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer map;
+    private long capacity; // 当前映射能容纳的记录数
+    private long count;
+
+    // 内存中的索引，与文件头保持一致
+    private final long[] games = new long[MODE_COUNT];
+    private final long[] totalLines = new long[MODE_COUNT];
+    private final long[] totalMillis = new long[MODE_COUNT];
+    private final int[][] top = new int[MODE_COUNT][TOP_N]; // 记录编号，按分数从高到低
+    private final int[][] topScores = new int[MODE_COUNT][TOP_N];
+    private final int[] topSizes = new int[MODE_COUNT];
+    private boolean rebuilt = false;
+
+    private StatsStore(Path path) throws IOException {
+        this.path = path;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static StatsStore open(Path path) throws IOException {
+        return new StatsStore(path);
+    }
+
+    // 统计文件：-Dtetris.statsFile 指定，默认 ~/.tetris/stats.tsts
+    public static Path getDefaultPath() {
+        String file = System.getProperty("tetris.statsFile");
+        if (file != null) {
+            return Paths.get(file);
+        }
+        return Paths.get(System.getProperty("user.home"), ".tetris", "stats.tsts");
+    }
+
+    //界面共用的默认实例，第一次使用时打开
+
+    public static synchronized StatsStore getDefault() throws IOException {
+        if (defaultStore == null) {
+            defaultStore = open(getDefaultPath());
+        }
+        return defaultStore;
+    }
+
+    private void load() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            remap(GROWTH_RECORDS);
+            map.putInt(0, MAGIC);
+            map.putShort(VERSION_OFFSET, (short) VERSION);
+            map.putShort(RECORD_BYTES_OFFSET, (short) RECORD_BYTES);
+            clearIndex();
+            writeHeader();
+            return;
+        }
+
+        if (size < HEADER_BYTES) {
+            throw new IOException("Not a statistics file: " + path);
+        }
+        remap(Math.max(1, Math.min((size - HEADER_BYTES) / RECORD_BYTES, MAX_RECORDS)));
+        if (map.getInt(0) != MAGIC) {
+            throw new IOException("Not a statistics file: " + path);
+        }
+        if (map.getShort(VERSION_OFFSET) != VERSION || map.getShort(RECORD_BYTES_OFFSET) != RECORD_BYTES) {
+            throw new IOException("Unsupported statistics file version: " + map.getShort(VERSION_OFFSET));
+        }
+
+        count = map.getLong(COUNT_OFFSET);
+        if (count < 0 || count > capacity || !readIndex()) {
+            // 文件头不可信：按文件里实际写入的记录重建，记录数也不能用文件头里的值
+            count = scanRecordCount();
+            rebuildIndex();
+            writeHeader();
+            rebuilt = true;
+        }
+    }
+
+    // 映射能容纳 records 条记录的区域（文件会随之变长）
+    private void remap(long records) throws IOException {
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + records * RECORD_BYTES);
+        capacity = records;
+    }
+
+    //追加一局的记录，返回记录编号
+
+    public synchronized long append(GameRecord record) throws IOException {
+        if (count == capacity) {
+            if (capacity >= MAX_RECORDS) {
+                throw new IOException("Statistics file is full: " + path);
+            }
+            remap(Math.min(capacity + Math.max(capacity, GROWTH_RECORDS), MAX_RECORDS));
+        }
+        long index = count;
+        writeRecord(recordOffset(index), record);
+
+        int mode = record.mode;
+        if (mode >= 0 && mode < MODE_COUNT) {
+            games[mode]++;
+            totalLines[mode] += record.lines;
+            totalMillis[mode] += record.durationMillis;
+            offerTop(mode, (int) index, record.score);
+        }
+        count = index + 1;
+        writeHeader();
+        return index;
+    }
+
+    // 插入排行榜（分数相同时先达到的排在前面），TOP_N 很小，直接插入排序
+    private void offerTop(int mode, int index, int score) {
+        int size = topSizes[mode];
+        if (size == TOP_N && score <= topScores[mode][TOP_N - 1]) return;
+
+        int pos = Math.min(size, TOP_N - 1);
+        while (pos > 0 && topScores[mode][pos - 1] < score) {
+            top[mode][pos] = top[mode][pos - 1];
+            topScores[mode][pos] = topScores[mode][pos - 1];
+            pos--;
+        }
+        top[mode][pos] = index;
+        topScores[mode][pos] = score;
+        if (size < TOP_N) topSizes[mode] = size + 1;
+    }
+
+    private void clearIndex() {
+        Arrays.fill(games, 0);
+        Arrays.fill(totalLines, 0);
+        Arrays.fill(totalMillis, 0);
+        Arrays.fill(topSizes, 0);
+    }
+
+    // 从后往前找最后一条写入过的记录（预分配的空位全是 0，真实记录的棋盘宽度至少为 1）
+    private long scanRecordCount() {
+        long index = capacity;
+        while (index > 0 && map.getShort(recordOffset(index - 1) + WIDTH_OFFSET) == 0) {
+            index--;
+        }
+        return index;
+    }
+
+    // 扫描全部记录重建排行榜和累计统计
+    private void rebuildIndex() {
+        clearIndex();
+        for (long i = 0; i < count; i++) {
+            int offset = recordOffset(i);
+            int mode = map.get(offset + MODE_OFFSET);
+            if (mode < 0 || mode >= MODE_COUNT) continue;
+            int score = map.getInt(offset + SCORE_OFFSET);
+            games[mode]++;
+            totalLines[mode] += map.getInt(offset + LINES_OFFSET);
+            totalMillis[mode] += map.getInt(offset + MILLIS_OFFSET);
+            offerTop(mode, (int) i, score);
+        }
+    }
+
+    // 从文件头读取索引；校验和或记录编号不对时返回 false
+    private boolean readIndex() {
+        if (map.getLong(CHECKSUM_OFFSET) != checksum()) return false;
+        for (int mode = 0; mode < MODE_COUNT; mode++) {
+            int base = MODES_OFFSET + mode * MODE_HEADER_BYTES;
+            games[mode] = map.getLong(base + MODE_GAMES_OFFSET);
+            totalLines[mode] = map.getLong(base + MODE_LINES_OFFSET);
+            totalMillis[mode] = map.getLong(base + MODE_MILLIS_OFFSET);
+            int size = 0;
+            for (int i = 0; i < TOP_N; i++) {
+                int index = map.getInt(base + MODE_TOP_OFFSET + i * 4);
+                if (index < 0) break;
+                if (index >= count) return false;
+                top[mode][size] = index;
+                topScores[mode][size] = map.getInt(recordOffset(index) + SCORE_OFFSET);
+                size++;
+            }
+            topSizes[mode] = size;
+        }
+        return true;
+    }
+
+    private void writeHeader() {
+        map.putLong(COUNT_OFFSET, count);
+        for (int mode = 0; mode < MODE_COUNT; mode++) {
+            int base = MODES_OFFSET + mode * MODE_HEADER_BYTES;
+            map.putLong(base + MODE_GAMES_OFFSET, games[mode]);
+            map.putLong(base + MODE_LINES_OFFSET, totalLines[mode]);
+            map.putLong(base + MODE_MILLIS_OFFSET, totalMillis[mode]);
+            for (int i = 0; i < TOP_N; i++) {
+                map.putInt(base + MODE_TOP_OFFSET + i * 4, i < topSizes[mode] ? top[mode][i] : -1);
+            }
+        }
+        map.putLong(CHECKSUM_OFFSET, checksum());
+    }
+
+    // 文件头中记录数和各模式索引的校验和
+    private long checksum() {
+        long hash = map.getLong(COUNT_OFFSET) ^ 0x9E3779B97F4A7C15L;
+        for (int offset = MODES_OFFSET; offset < MODES_OFFSET + MODE_COUNT * MODE_HEADER_BYTES; offset += 8) {
+            hash = (hash ^ map.getLong(offset)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static int recordOffset(long index) {
+        return (int) (HEADER_BYTES + index * RECORD_BYTES);
+    }
+
+    private void writeRecord(int offset, GameRecord record) {
+        map.putLong(offset + FINISHED_AT_OFFSET, record.finishedAt);
+        map.putLong(offset + SEED_OFFSET, record.seed);
+        map.putInt(offset + SCORE_OFFSET, record.score);
+        map.putInt(offset + LINES_OFFSET, record.lines);
+        map.putInt(offset + PIECES_OFFSET, record.pieces);
+        map.putInt(offset + MILLIS_OFFSET, (int) Math.min(Integer.MAX_VALUE, record.durationMillis));
+        map.putLong(offset + TICKS_OFFSET, record.ticks);
+        map.put(offset + MODE_OFFSET, (byte) record.mode);
+        map.put(offset + FLAGS_OFFSET, (byte) record.flags);
+        map.putShort(offset + WIDTH_OFFSET, (short) record.boardWidth);
+        map.putShort(offset + HEIGHT_OFFSET, (short) record.boardHeight);
+        byte[] name = record.replayName == null ? new byte[0]
+                : record.replayName.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < REPLAY_NAME_BYTES; i++) {
+            map.put(offset + REPLAY_NAME_OFFSET + i, i < name.length ? name[i] : 0);
+        }
+    }
+
+    private GameRecord readRecord(long index) {
+        int offset = recordOffset(index);
+        byte[] name = new byte[REPLAY_NAME_BYTES];
+        int length = 0;
+        while (length < REPLAY_NAME_BYTES && map.get(offset + REPLAY_NAME_OFFSET + length) != 0) {
+            name[length] = map.get(offset + REPLAY_NAME_OFFSET + length);
+            length++;
+        }
+        return new GameRecord(map.getLong(offset + FINISHED_AT_OFFSET), map.getLong(offset + SEED_OFFSET),
+                map.getInt(offset + SCORE_OFFSET), map.getInt(offset + LINES_OFFSET), map.getInt(offset + PIECES_OFFSET),
+                map.getInt(offset + MILLIS_OFFSET), map.getLong(offset + TICKS_OFFSET),
+                map.get(offset + MODE_OFFSET), map.get(offset + FLAGS_OFFSET),
+                map.getShort(offset + WIDTH_OFFSET) & 0xFFFF, map.getShort(offset + HEIGHT_OFFSET) & 0xFFFF,
+                length == 0 ? null : new String(name, 0, length, StandardCharsets.US_ASCII));
+    }
+
+    // 某种生成模式的前 TOP_N 名
+    public synchronized List<GameRecord> getTopScores(int mode) {
+        List<GameRecord> result = new ArrayList<>(TOP_N);
+        for (int i = 0; i < topSizes[mode]; i++) {
+            result.add(readRecord(top[mode][i]));
+        }
+        return result;
+    }
+
+    public synchronized GameRecord getRecord(long index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("record " + index + " of " + count);
+        }
+        return readRecord(index);
+    }
+
+    public synchronized long getRecordCount() {
+        return count;
+    }
+
+    public synchronized long getGamesPlayed(int mode) {
+        return games[mode];
+    }
+
+    public synchronized long getTotalLines(int mode) {
+        return totalLines[mode];
+    }
+
+    public synchronized long getTotalMillis(int mode) {
+        return totalMillis[mode];
+    }
+
+    // 打开时文件头是否损坏并重建过
+    public boolean wasRebuilt() {
+        return rebuilt;
+    }
+
+    //把映射的修改写到磁盘（追加本身只写内存映射，由操作系统择机落盘）
+
+    public synchronized void force() {
+        map.force();
+    }
+
+    public synchronized void close() throws IOException {
+        map.force();
+        channel.close();
+    }
+
+    /*
+     一局游戏的记录。replayName 是回放目录中的文件名，没有录制时为 null。
+     */
+    public static final class GameRecord {
+        final long finishedAt;
+        final long seed;
+        final int score;
+        final int lines;
+        final int pieces;
+        final long durationMillis;
+        final long ticks;
+        final int mode;
+        final int flags;
+        final int boardWidth;
+        final int boardHeight;
+        final String replayName;
+
+        public GameRecord(long finishedAt, long seed, int score, int lines, int pieces, long durationMillis,
+                          long ticks, int mode, int flags, int boardWidth, int boardHeight, String replayName) {
+            if (boardWidth <= 0) {
+                throw new IllegalArgumentException("Bad board width: " + boardWidth);
+            }
+            if (replayName != null && replayName.length() > REPLAY_NAME_BYTES) {
+                throw new IllegalArgumentException("Replay name too long: " + replayName);
+            }
+            this.finishedAt = finishedAt;
+            this.seed = seed;
+            this.score = score;
+            this.lines = lines;
+            this.pieces = pieces;
+            this.durationMillis = durationMillis;
+            this.ticks = ticks;
+            this.mode = mode;
+            this.flags = flags;
+            this.boardWidth = boardWidth;
+            this.boardHeight = boardHeight;
+            this.replayName = replayName;
+        }
+
+        //从一局结束（或中途退出）的引擎生成记录
+
+        public static GameRecord of(GameEngine engine, String replayName) {
+            Board board = engine.getBoard();
+            return new GameRecord(System.currentTimeMillis(), engine.getSeed(), engine.getScore(),
+                    engine.getLines(), engine.getPiecesPlaced(), engine.getElapsedMillis(), engine.getTickCount(),
+                    engine.getGeneratorMode(), engine.isGameOver() ? FLAG_GAME_OVER : 0,
+                    board.getWidth(), board.getHeight(), replayName);
+        }
+
+        public long getFinishedAt() {
+            return finishedAt;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public int getLines() {
+            return lines;
+        }
+
+        public int getPieces() {
+            return pieces;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        public int getMode() {
+            return mode;
+        }
+
+        public boolean isGameOver() {
+            return (flags & FLAG_GAME_OVER) != 0;
+        }
+
+        public int getBoardWidth() {
+            return boardWidth;
+        }
+
+        public int getBoardHeight() {
+            return boardHeight;
+        }
+
+        public String getReplayName() {
+            return replayName;
+        }
+    }
+}
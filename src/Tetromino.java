@@ -1,9 +1,11 @@
 import java.awt.Color;
-import java.util.Random;
 
 /*
  Tetromino 类：定义单个俄罗斯方块的形状、颜色和旋转状态。
  每个方块由一个 2D 数组定义其相对于自身的坐标。
+ 所有 7 种方块的 4 个旋转状态在类加载时一次性预先计算好，存放在静态表中。
+ Tetromino 对象是享元 (flyweight)：只代表 (类型, 旋转状态)，不可变且全局共享，
+ 因此旋转、移动、校验位置都不会分配任何新对象。
  */
 public class Tetromino {
     // 方块类型常量
@@ -15,132 +17,228 @@ public class Tetromino {
     public static final int TYPE_T = 6;
     public static final int TYPE_Z = 7;
 
-    private int type;
-    private int[][] shape; // 形状数组，1表示方块实体，0表示空
-    private Color color;
+    public static final int TYPE_COUNT = 7;
+    public static final int ROTATION_COUNT = 4;
 
-    // 私有构造函数，只能通过静态工厂方法创建
-    private Tetromino(int type, int[][] shape, Color color) {
+    private final int type;
+    private final int rotation; // 旋转状态 0~3，0 为初始状态，每次顺时针旋转 +1
+    private final int[][] shape; // 形状数组，1表示方块实体，0表示空（共享数组，不要修改）
+    private final int[] rowMasks; // 每一行的位掩码（第 c 位对应第 c 列），供 Board 做位运算碰撞检测
+    private final Color color;
+    // 踢墙测试表：kicks[turns] 为从这个状态旋转 turns 次（1 顺时针、2 半圈、3 逆时针）时依次尝试的偏移，
+    // 按 dx0, dy0, dx1, dy1, ... 存放，y 向下为正；旋转表建好之后填入
+    private final int[][] kicks = new int[ROTATION_COUNT][];
+
+    // 私有构造函数，只在构建静态旋转表时调用
+    private Tetromino(int type, int rotation, int[][] shape, Color color) {
         this.type = type;
+        this.rotation = rotation;
         this.shape = shape;
+        this.rowMasks = toRowMasks(shape);
         this.color = color;
     }
 
-    // 静态工厂方法：创建所有七种标准方块
-    // (使用 4x4 数组定义 I 型，3x3 数组定义其他，这是常见的做法)
+    // 初始形状定义
+    // (使用 4x4 数组定义 I 型，2x2 定义 O 型，3x3 数组定义其他，这是常见的做法)
+    private static final int[][][] BASE_SHAPES = {
+            null, // 类型从 1 开始
+            // I 型 (青色/Cyan)
+            {
+                    {0, 0, 0, 0},
+                    {1, 1, 1, 1},
+                    {0, 0, 0, 0},
+                    {0, 0, 0, 0}
+            },
+            // J 型 (蓝色/Blue)
+            {
+                    {1, 0, 0},
+                    {1, 1, 1},
+                    {0, 0, 0}
+            },
+            // L 型 (橙色/Orange)
+            {
+                    {0, 0, 1},
+                    {1, 1, 1},
+                    {0, 0, 0}
+            },
+            // O 型 (黄色/Yellow) - 只需要 2x2 数组
+            {
+                    {1, 1},
+                    {1, 1}
+            },
+            // S 型 (绿色/Green)
+            {
+                    {0, 1, 1},
+                    {1, 1, 0},
+                    {0, 0, 0}
+            },
+            // T 型 (洋红色/Magenta)
+            {
+                    {0, 1, 0},
+                    {1, 1, 1},
+                    {0, 0, 0}
+            },
+            // Z 型 (红色/Red)
+            {
+                    {1, 1, 0},
+                    {0, 1, 1},
+                    {0, 0, 0}
+            }
+    };
+
+    private static final Color[] COLORS = {
+            null, Color.CYAN, Color.BLUE, Color.ORANGE, Color.YELLOW, Color.GREEN, Color.MAGENTA, Color.RED
+    };
+
+    /*
+     SRS (Super Rotation System) 踢墙表，写法与标准文档一致：状态 0 为出生状态，R/2/L 依次为顺时针转 1/2/3 次，
+     偏移为 (x, y)，y 向上为正。原地旋转被挡住时依次尝试每个偏移，第一个不重叠的位置生效。
+     JLSTZ 和 I 各有一张顺时针/逆时针的表；半圈旋转不属于标准 SRS，采用常见的 SRS+ 扩展表，I 方块也使用同一张表。
+     */
+    private static final int[][][] JLSTZ_CW_KICKS = {
+            {{0, 0}, {-1, 0}, {-1, 1}, {0, -2}, {-1, -2}}, // 0 -> R
+            {{0, 0}, {1, 0}, {1, -1}, {0, 2}, {1, 2}},     // R -> 2
+            {{0, 0}, {1, 0}, {1, 1}, {0, -2}, {1, -2}},    // 2 -> L
+            {{0, 0}, {-1, 0}, {-1, -1}, {0, 2}, {-1, 2}}   // L -> 0
+    };
+    private static final int[][][] JLSTZ_CCW_KICKS = {
+            {{0, 0}, {1, 0}, {1, 1}, {0, -2}, {1, -2}},    // 0 -> L
+            {{0, 0}, {1, 0}, {1, -1}, {0, 2}, {1, 2}},     // R -> 0
+            {{0, 0}, {-1, 0}, {-1, 1}, {0, -2}, {-1, -2}}, // 2 -> R
+            {{0, 0}, {-1, 0}, {-1, -1}, {0, 2}, {-1, 2}}   // L -> 2
+    };
+    private static final int[][][] I_CW_KICKS = {
+            {{0, 0}, {-2, 0}, {1, 0}, {-2, -1}, {1, 2}},   // 0 -> R
+            {{0, 0}, {-1, 0}, {2, 0}, {-1, 2}, {2, -1}},   // R -> 2
+            {{0, 0}, {2, 0}, {-1, 0}, {2, 1}, {-1, -2}},   // 2 -> L
+            {{0, 0}, {1, 0}, {-2, 0}, {1, -2}, {-2, 1}}    // L -> 0
+    };
+    private static final int[][][] I_CCW_KICKS = {
+            {{0, 0}, {-1, 0}, {2, 0}, {-1, 2}, {2, -1}},   // 0 -> L
+            {{0, 0}, {2, 0}, {-1, 0}, {2, 1}, {-1, -2}},   // R -> 0
+            {{0, 0}, {1, 0}, {-2, 0}, {1, -2}, {-2, 1}},   // 2 -> R
+            {{0, 0}, {-2, 0}, {1, 0}, {-2, -1}, {1, 2}}    // L -> 2
+    };
+    private static final int[][][] HALF_TURN_KICKS = {
+            {{0, 0}, {0, 1}, {1, 1}, {-1, 1}, {1, 0}, {-1, 0}},     // 0 -> 2
+            {{0, 0}, {1, 0}, {1, 2}, {1, 1}, {0, 2}, {0, 1}},       // R -> L
+            {{0, 0}, {0, -1}, {-1, -1}, {1, -1}, {-1, 0}, {1, 0}},  // 2 -> 0
+            {{0, 0}, {-1, 0}, {-1, 2}, {-1, 1}, {0, 2}, {0, 1}}     // L -> R
+    };
+    // O 方块旋转后形状不变，只做原地测试
+    private static final int[] NO_KICKS = {0, 0};
+
+    // 旋转表：ROTATIONS[type][rotation]
+    private static final Tetromino[][] ROTATIONS = new Tetromino[TYPE_COUNT + 1][ROTATION_COUNT];
+
+    static {
+        for (int type = 1; type <= TYPE_COUNT; type++) {
+            int[][] shape = BASE_SHAPES[type];
+            for (int rot = 0; rot < ROTATION_COUNT; rot++) {
+                Tetromino piece = new Tetromino(type, rot, shape, COLORS[type]);
+                ROTATIONS[type][rot] = piece;
+                piece.kicks[0] = NO_KICKS;
+                piece.kicks[1] = type == TYPE_O ? NO_KICKS : toScreenOffsets((type == TYPE_I ? I_CW_KICKS : JLSTZ_CW_KICKS)[rot]);
+                piece.kicks[2] = type == TYPE_O ? NO_KICKS : toScreenOffsets(HALF_TURN_KICKS[rot]);
+                piece.kicks[3] = type == TYPE_O ? NO_KICKS : toScreenOffsets((type == TYPE_I ? I_CCW_KICKS : JLSTZ_CCW_KICKS)[rot]);
+                shape = rotateClockwise(shape);
+            }
+        }
+    }
+
+    // 把 (x, y 向上) 的偏移表展开成 dx0, dy0, dx1, dy1, ...（y 向下），旋转时直接按下标读取
+    private static int[] toScreenOffsets(int[][] table) {
+        int[] offsets = new int[table.length * 2];
+        for (int i = 0; i < table.length; i++) {
+            offsets[2 * i] = table[i][0];
+            offsets[2 * i + 1] = -table[i][1];
+        }
+        return offsets;
+    }
+
+    // 旋转逻辑 (只在构建旋转表时执行一次)
+
+    private static int[][] rotateClockwise(int[][] shape) {
+        // 旋转的核心算法：
+        // 设原形状为 shape[r][c]，旋转后的新形状 newShape[r][c]
+        // 顺时针旋转 90 度的关系是：newShape[c][N - 1 - r] = shape[r][c]
+
+        int N = shape.length; // 形状矩阵的大小 ，2、3 或 4
+        int[][] newShape = new int[N][N];
+
+        for (int r = 0; r < N; r++) {
+            for (int c = 0; c < N; c++) {
+                // 执行旋转转换
+                newShape[c][N - 1 - r] = shape[r][c];
+            }
+        }
+        return newShape;
+    }
+
+    // 把形状数组压缩为按行的位掩码
+    private static int[] toRowMasks(int[][] shape) {
+        int[] masks = new int[shape.length];
+        for (int r = 0; r < shape.length; r++) {
+            for (int c = 0; c < shape[r].length; c++) {
+                if (shape[r][c] == 1) {
+                    masks[r] |= 1 << c;
+                }
+            }
+        }
+        return masks;
+    }
+
+    // 查表获取指定类型和旋转状态的方块
+    public static Tetromino of(int type, int rotation) {
+        return ROTATIONS[type][rotation & (ROTATION_COUNT - 1)];
+    }
+
+    // 静态工厂方法：获取所有七种标准方块的初始状态
 
     public static Tetromino createI() {
-        // I 型 (青色/Cyan)
-        int[][] iShape = new int[][] {
-                {0, 0, 0, 0},
-                {1, 1, 1, 1},
-                {0, 0, 0, 0},
-                {0, 0, 0, 0}
-        };
-        return new Tetromino(TYPE_I, iShape, Color.CYAN);
+        return of(TYPE_I, 0);
     }
 
     public static Tetromino createJ() {
-        // J 型 (蓝色/Blue)
-        int[][] jShape = new int[][] {
-                {1, 0, 0},
-                {1, 1, 1},
-                {0, 0, 0}
-        };
-        return new Tetromino(TYPE_J, jShape, Color.BLUE);
+        return of(TYPE_J, 0);
     }
 
     public static Tetromino createL() {
-        // L 型 (橙色/Orange)
-        int[][] lShape = new int[][] {
-                {0, 0, 1},
-                {1, 1, 1},
-                {0, 0, 0}
-        };
-        return new Tetromino(TYPE_L, lShape, Color.ORANGE);
+        return of(TYPE_L, 0);
     }
 
     public static Tetromino createO() {
-        // O 型 (黄色/Yellow) - 只需要 2x2 数组
-        int[][] oShape = new int[][] {
-                {1, 1},
-                {1, 1}
-        };
-        return new Tetromino(TYPE_O, oShape, Color.YELLOW);
+        return of(TYPE_O, 0);
     }
 
     public static Tetromino createS() {
-        // S 型 (绿色/Green)
-        int[][] sShape = new int[][] {
-                {0, 1, 1},
-                {1, 1, 0},
-                {0, 0, 0}
-        };
-        return new Tetromino(TYPE_S, sShape, Color.GREEN);
+        return of(TYPE_S, 0);
     }
 
     public static Tetromino createT() {
-        // T 型 (洋红色/Magenta)
-        int[][] tShape = new int[][] {
-                {0, 1, 0},
-                {1, 1, 1},
-                {0, 0, 0}
-        };
-        return new Tetromino(TYPE_T, tShape, Color.MAGENTA);
+        return of(TYPE_T, 0);
     }
 
     public static Tetromino createZ() {
-        // Z 型 (红色/Red)
-        int[][] zShape = new int[][] {
-                {1, 1, 0},
-                {0, 1, 1},
-                {0, 0, 0}
-        };
-        return new Tetromino(TYPE_Z, zShape, Color.RED);
-    }
-
-    // 实用方法：随机生成一个方块
-    private static final Random random = new Random();
-
-    public static Tetromino createRandom() {
-        // 随机选择一个类型 (1到7)
-        int randomType = random.nextInt(7) + 1;
-
-        switch (randomType) {
-            case TYPE_I: return createI();
-            case TYPE_J: return createJ();
-            case TYPE_L: return createL();
-            case TYPE_O: return createO();
-            case TYPE_S: return createS();
-            case TYPE_T: return createT();
-            case TYPE_Z: return createZ();
-            default: return createT(); // 默认返回 T 型（作为安全备份）
-        }
+        return of(TYPE_Z, 0);
     }
 
-    // 旋转逻辑 (TODO: 复杂的核心逻辑)
-
     /**
-      返回一个新对象，该新对象是当前方块顺时针旋转 90 度后的状态。
+      返回当前方块顺时针旋转 90 度后的状态（查表得到，不会分配新对象）。
       注意：在实际游戏中，您必须在 GamePanel 中验证旋转后的位置是否合法。
      */
     public Tetromino rotate() {
-        // 旋转的核心算法：
-        // 设原形状为 shape[r][c]，旋转后的新形状 newShape[r][c]
-        // 顺时针旋转 90 度的关系是：newShape[c][N - 1 - r] = shape[r][c]
-
-        int N = shape.length; // 形状矩阵的大小 ，3 或 4
-        int[][] newShape = new int[N][N];
+        return ROTATIONS[type][(rotation + 1) & (ROTATION_COUNT - 1)];
+    }
 
-        for (int r = 0; r < N; r++) {
-            for (int c = 0; c < N; c++) {
-                // 执行旋转转换
-                newShape[c][N - 1 - r] = shape[r][c];
-            }
-        }
+    // 顺时针旋转 turns 次后的状态（3 即逆时针一次）
+    public Tetromino rotate(int turns) {
+        return ROTATIONS[type][(rotation + turns) & (ROTATION_COUNT - 1)];
+    }
 
-        // 返回一个新的 Tetromino 对象，包含旋转后的形状，但类型和颜色不变
-        return new Tetromino(this.type, newShape, this.color);
+    // 从这个状态旋转 turns 次时依次尝试的踢墙偏移（dx, dy 交替存放，y 向下为正；共享数组，不要修改）
+    public int[] getKicks(int turns) {
+        return kicks[turns & (ROTATION_COUNT - 1)];
     }
 
     // Getter 方法
@@ -149,6 +247,10 @@ public class Tetromino {
         return shape;
     }
 
+    public int[] getRowMasks() {
+        return rowMasks;
+    }
+
     public Color getColor() {
         return color;
     }
@@ -156,4 +258,8 @@ public class Tetromino {
     public int getType() {
         return type;
     }
+
+    public int getRotation() {
+        return rotation;
+    }
 }
@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/*
+ VersusClient 类：对战客户端。连接 VersusServer，收到 START 后在本地建一份相同的 VersusMatch，
+ 每收到一帧 FRAME 就用其中所有玩家的输入推进本地副本，再由 InputSource 决定自己下一帧的按键并发送。
+ 开局时先发一帧空输入，所以自己的输入总是比画面晚一帧生效（固定 1 帧的输入延迟），
+ 服务器因此总能提前收齐下一帧，不会每帧都等一次往返。
+
+ 用法：java VersusClient 主机 [端口] [策略]
+       java VersusClient [local [策略1] [策略2]]
+ 第二种用法在本机启动一个服务器，两个客户端用给定的策略（同 SimulationRunner，默认 ai 对 ai:2）对战一场并输出结果。
+ */
+public class VersusClient {
+    private final SocketChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocate(4096);
+    private final ByteBuffer out = ByteBuffer.allocate(2);
+
+    private VersusMatch match;
+    private int playerIndex;
+    private int matchId;
+    private int winner = -1;
+    private boolean ended = false; // 是否收到了 END
+
+    public VersusClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+        in.flip(); // 读缓冲区平时处于读模式，开始时没有数据
+    }
+
+    //加入比赛并一直玩到结束，返回胜者编号（没有胜者时返回 -1）
+
+    public int play(InputSource input) throws IOException {
+        try {
+            send(VersusServer.MSG_JOIN, VersusServer.PROTOCOL_VERSION);
+            readStart();
+            send(VersusServer.MSG_INPUT, GameEngine.INPUT_NONE);
+
+            int players = match.getPlayerCount();
+            int[] inputs = new int[players];
+            while (true) {
+                int type = readByte();
+                if (type == VersusServer.MSG_END) {
+                    int value = readByte();
+                    winner = value == VersusServer.NO_WINNER ? -1 : value;
+                    ended = true;
+                    return winner;
+                }
+                if (type == VersusServer.MSG_FORFEIT) {
+                    int player = readByte();
+                    if (player >= players) {
+                        throw new IOException("Bad player index: " + player);
+                    }
+                    match.forfeit(player);
+                    continue;
+                }
+                if (type != VersusServer.MSG_FRAME) {
+                    throw new IOException("Unexpected message: " + type);
+                }
+
+                fill(players);
+                for (int i = 0; i < players; i++) {
+                    inputs[i] = in.get() & 0xFF;
+                }
+                match.step(inputs);
+
+                // 比赛结束后服务器不再需要输入，只等 END
+                if (!match.isFinished()) {
+                    send(VersusServer.MSG_INPUT, input.nextInput(match.getEngine(playerIndex)));
+                }
+            }
+        } finally {
+            // 中途离开（例如输入源出错）时告诉服务器认输，其他玩家不必等超时
+            if (match != null && !ended) {
+                try {
+                    out.clear();
+                    out.put(VersusServer.MSG_FORFEIT).flip();
+                    channel.write(out);
+                } catch (IOException e) {
+                    // 连接已经断开，服务器同样会判负
+                }
+            }
+            channel.close();
+        }
+    }
+
+    private void readStart() throws IOException {
+        fill(VersusServer.START_LENGTH);
+        if (in.get() != VersusServer.MSG_START) {
+            throw new IOException("Expected START");
+        }
+        matchId = in.getInt();
+        long seed = in.getLong();
+        int mode = in.get();
+        int players = in.get() & 0xFF;
+        playerIndex = in.get() & 0xFF;
+        int width = in.getShort();
+        int height = in.getShort();
+        match = new VersusMatch(players, seed, mode, width, height);
+    }
+
+    private void send(byte type, int value) throws IOException {
+        out.clear();
+        out.put(type).put((byte) value).flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+
+    private int readByte() throws IOException {
+        fill(1);
+        return in.get() & 0xFF;
+    }
+
+    // 确保读缓冲区里至少有 bytes 个未读字节（缓冲区处于读模式）
+    private void fill(int bytes) throws IOException {
+        if (in.remaining() >= bytes) return;
+        in.compact();
+        while (in.position() < bytes) {
+            if (channel.read(in) < 0) {
+                throw new IOException("Connection closed by server");
+            }
+        }
+        in.flip();
+    }
+
+    // 本地副本，比赛结束后与服务器的权威结果一致
+    public VersusMatch getMatch() {
+        return match;
+    }
+
+    public int getPlayerIndex() {
+        return playerIndex;
+    }
+
+    public int getMatchId() {
+        return matchId;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && !args[0].equals("local")) {
+            String host = args[0];
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : VersusServer.DEFAULT_PORT;
+            String policy = args.length > 2 ? args[2] : "ai";
+            VersusClient client = new VersusClient(host, port);
+            int winner = client.play(SimulationRunner.createPolicy(policy, System.nanoTime()));
+            printResult(client, winner);
+            return;
+        }
+
+        String[] policies = {args.length > 1 ? args[1] : "ai", args.length > 2 ? args[2] : "ai:2"};
+        VersusServer server = VersusServer.startLoopback(2);
+        VersusClient[] clients = new VersusClient[2];
+        int[] winners = new int[2];
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < clients.length; i++) {
+            VersusClient client = new VersusClient("127.0.0.1", server.getPort());
+            clients[i] = client;
+            int slot = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    winners[slot] = client.play(SimulationRunner.createPolicy(policies[slot], slot));
+                } catch (IOException e) {
+                    System.err.println("Client " + slot + " failed: " + e);
+                }
+            }, "tetris-versus-client-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        server.stop();
+        if (winners[0] != winners[1]) {
+            System.err.println("Clients disagree on the winner: " + winners[0] + " / " + winners[1]);
+        }
+        printResult(clients[0], winners[0]);
+    }
+
+    private static void printResult(VersusClient client, int winner) {
+        VersusMatch match = client.getMatch();
+        System.out.printf("match %d finished after %d ticks, winner: %s%n", client.getMatchId(), match.getTick(),
+                winner < 0 ? "none" : "player " + winner);
+        for (int i = 0; i < match.getPlayerCount(); i++) {
+            GameEngine engine = match.getEngine(i);
+            System.out.printf("  player %d%s  score %d  lines %d  pieces %d%n", i,
+                    i == client.getPlayerIndex() ? " (you)" : "", engine.getScore(), engine.getLines(),
+                    engine.getPiecesPlaced());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ VersusMatch 类：一场多人对战，多个 GameEngine 以同一个逻辑帧为节拍同时推进。
+ 每个玩家消行时按引擎计分规则的判定（消行数、T-spin、背靠背、连击）查攻击表，
+ 向所有对手发送垃圾行（先抵消自己待处理的垃圾行），
+ 最后只剩一个玩家存活时比赛结束。
+ 所有玩家使用同样的种子（同样的方块序列），结果只取决于每一帧的输入，
+ 所以服务器和每个客户端各自运行一份，只需交换输入（lockstep）就能保持完全一致。
+ */
+public class VersusMatch {
+    // 一次消除 0~4 行发送的垃圾行数：普通消行、T-spin、T-spin Mini
+    private static final int[] LINE_ATTACK = {0, 0, 1, 2, 4};
+    private static final int[] T_SPIN_ATTACK = {0, 2, 4, 6};
+    private static final int[] T_SPIN_MINI_ATTACK = {0, 0, 1};
+    // 背靠背的困难消行额外发送的行数
+    private static final int BACK_TO_BACK_ATTACK = 1;
+    // 连击额外发送的行数，按 Scoring 的连击数查表（第一次消行为 0），超出表长时取最后一项
+    private static final int[] COMBO_ATTACK = {0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 4, 5};
+
+    private final GameEngine[] engines;
+    private final boolean[] forfeited;
+    private final int[] lastLines; // 上一帧结束时各玩家的累计消行数
+    private long tick = 0;
+
+    public VersusMatch(int players, long seed, int generatorMode, int width, int height) {
+        if (players < 1) {
+            throw new IllegalArgumentException("players: " + players);
+        }
+        engines = new GameEngine[players];
+        forfeited = new boolean[players];
+        lastLines = new int[players];
+        for (int i = 0; i < players; i++) {
+            engines[i] = new GameEngine(PieceGenerator.create(generatorMode, seed), width, height);
+        }
+    }
+
+    /**
+      所有玩家前进一帧，inputs[i] 为第 i 个玩家这一帧按住的按键。
+      先让所有引擎各走一步，再统一结算攻击，保证结果与玩家顺序无关。
+     */
+    public void step(int[] inputs) {
+        if (isFinished()) return;
+
+        for (int i = 0; i < engines.length; i++) {
+            if (isAlive(i)) {
+                engines[i].step(inputs[i]);
+            }
+        }
+
+        for (int i = 0; i < engines.length; i++) {
+            int cleared = engines[i].getLines() - lastLines[i];
+            lastLines[i] = engines[i].getLines();
+            if (cleared <= 0 || !isAlive(i)) continue;
+
+            int attack = engines[i].cancelGarbage(attackFor(engines[i].getScoring()));
+            if (attack == 0) continue;
+            for (int j = 0; j < engines.length; j++) {
+                if (j != i && isAlive(j)) {
+                    engines[j].addGarbage(attack);
+                }
+            }
+        }
+        tick++;
+    }
+
+    /*
+     最近一次锁定的攻击行数。消除延迟结束、累计行数增加时，最近一次锁定就是这次消行
+     （延迟期间不会生成新方块），所以 Scoring 里的判定正好对应这次消行。
+     */
+    static int attackFor(Scoring scoring) {
+        int lines = scoring.getLastLines();
+        int[] table;
+        if (scoring.getLastSpin() == Scoring.SPIN_FULL) {
+            table = T_SPIN_ATTACK;
+        } else if (scoring.getLastSpin() == Scoring.SPIN_MINI) {
+            table = T_SPIN_MINI_ATTACK;
+        } else {
+            table = LINE_ATTACK;
+        }
+        int attack = table[Math.min(lines, table.length - 1)];
+        if (lines > 0) {
+            if (scoring.wasLastBackToBack()) {
+                attack += BACK_TO_BACK_ATTACK;
+            }
+            attack += COMBO_ATTACK[Math.min(scoring.getCombo(), COMBO_ATTACK.length - 1)];
+        }
+        return attack;
+    }
+
+    // 玩家掉线或认输：之后不再推进，视为已经出局
+    public void forfeit(int player) {
+        forfeited[player] = true;
+    }
+
+    public boolean isAlive(int player) {
+        return !forfeited[player] && !engines[player].isGameOver();
+    }
+
+    // 单人比赛在玩家出局时结束，多人比赛在最多只剩一人时结束
+    public boolean isFinished() {
+        int alive = 0;
+        for (int i = 0; i < engines.length; i++) {
+            if (isAlive(i)) alive++;
+        }
+        return engines.length == 1 ? alive == 0 : alive <= 1;
+    }
+
+    //比赛结束后返回胜者编号；没有胜者（同时出局或单人比赛）时返回 -1
+
+    public int getWinner() {
+        if (!isFinished() || engines.length == 1) return -1;
+        for (int i = 0; i < engines.length; i++) {
+            if (isAlive(i)) return i;
+        }
+        return -1;
+    }
+
+    public GameEngine getEngine(int player) {
+        return engines[player];
+    }
+
+    public int getPlayerCount() {
+        return engines.length;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+}
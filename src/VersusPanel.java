@@ -0,0 +1,312 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ VersusPanel 类：本机对战界面，左边是键盘玩家，右边是 AI（AutoPlayer）。
+ 两块棋盘由同一个 VersusMatch 按逻辑帧同时推进，消行时按对战规则互相发送垃圾行，
+ 棋盘外侧的红条是即将升起的垃圾行数。键位与单人模式相同，P 暂停，比赛结束后按 Enter 再来一局，ESC 回到菜单。
+ 这里不经过网络：逻辑帧由 Swing 计时器在 EDT 上按真实时间推进（网络对战见 VersusServer / VersusClient）。
+ */
+public class VersusPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    private static final int PLAYER = 0;
+    private static final int CPU = 1;
+
+    private static final int TIMER_PERIOD = 10; // 毫秒
+    private static final int MAX_TICKS_PER_UPDATE = 10; // 卡顿后最多补几帧
+    private static final int HEADER_HEIGHT = 90;  // 棋盘上方的名字和分数
+    private static final int GARBAGE_BAR_WIDTH = 12;
+    private static final int BOARD_GAP = 80;      // 两块棋盘之间的距离（含垃圾条）
+    private static final int MIN_CELL_SIZE = 4;
+    private static final int MIN_OUTLINED_CELL_SIZE = 8;
+    private static final Color GARBAGE_COLOR = new Color(220, 40, 40);
+    private static final Color GHOST_FILL = new Color(255, 255, 255, 40);
+    private static final Font HINT_FONT = new Font("Arial", Font.PLAIN, 24);
+    private static final int AI_MAX_DEPTH = 2;
+
+    private final Runnable returnToMenuCallback;
+    private final Timer timer = new Timer(TIMER_PERIOD, e -> updateGame());
+
+    private VersusMatch match;
+    private AutoPlayer ai;
+    private final int[] inputs = new int[2];
+
+    // 键盘状态：heldInput 为按住的键；tappedInput 记下两帧之间按下又松开的键，保证下一帧仍能看到这次按下
+    private int heldInput = GameEngine.INPUT_NONE;
+    private int tappedInput = GameEngine.INPUT_NONE;
+
+    private long lastUpdateTime;
+    private long tickAccumulator;
+
+    // 布局：格子大小随窗口缩放，两块棋盘并排居中
+    private int cellSize = MIN_CELL_SIZE;
+    private final int[] boardX = new int[2];
+    private int boardY;
+
+    private final RenderCache renderCache = new RenderCache();
+    private final RenderCache.TextLine[] nameText = {
+            new RenderCache.TextLine(RenderCache.SCORE_FONT, v -> "YOU"),
+            new RenderCache.TextLine(RenderCache.SCORE_FONT, v -> "CPU")
+    };
+    private final RenderCache.TextLine[] scoreText = {
+            new RenderCache.TextLine(RenderCache.TITLE_FONT, v -> "Score: " + v),
+            new RenderCache.TextLine(RenderCache.TITLE_FONT, v -> "Score: " + v)
+    };
+    private final RenderCache.TextLine[] linesText = {
+            new RenderCache.TextLine(RenderCache.TITLE_FONT, v -> "Lines: " + v),
+            new RenderCache.TextLine(RenderCache.TITLE_FONT, v -> "Lines: " + v)
+    };
+    // 比赛结果：胜者编号，-1 为平局
+    private final RenderCache.TextLine resultText = new RenderCache.TextLine(RenderCache.GAME_OVER_FONT,
+            v -> v == PLAYER ? "YOU WIN" : v == CPU ? "YOU LOSE" : "DRAW");
+    private final RenderCache.TextLine pausedText = new RenderCache.TextLine(RenderCache.GAME_OVER_FONT,
+            v -> "PAUSED");
+    private final RenderCache.TextLine hintText = new RenderCache.TextLine(HINT_FONT,
+            v -> "Enter: play again    ESC: menu");
+
+    public VersusPanel(Runnable returnToMenuCallback) {
+        this.returnToMenuCallback = returnToMenuCallback;
+
+        setBackground(new Color(30, 30, 30));
+        setFocusable(true);
+        setPreferredSize(new Dimension(1000, 720));
+
+        setupKeyListener();
+        startMatch();
+    }
+
+    //开始新的一局：两个玩家使用同一个种子（同样的方块序列）
+
+    private void startMatch() {
+        match = new VersusMatch(2, System.nanoTime(), PieceGenerator.MODE_SEVEN_BAG,
+                GameEngine.DEFAULT_WIDTH, GameEngine.DEFAULT_HEIGHT);
+        // AI 在 EDT 上规划，深度最多 2，避免每个新方块出现时卡住界面
+        ai = new AutoPlayer(Math.min(AI_MAX_DEPTH, AutoPlayer.defaultDepth()), ForkJoinPool.commonPool());
+        heldInput = GameEngine.INPUT_NONE;
+        tappedInput = GameEngine.INPUT_NONE;
+        tickAccumulator = 0;
+        lastUpdateTime = System.nanoTime();
+        timer.start();
+        repaint();
+    }
+
+    private void setupKeyListener() {
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                int key = e.getKeyCode();
+                if (key == KeyEvent.VK_ESCAPE) {
+                    timer.stop();
+                    returnToMenuCallback.run();
+                    return;
+                }
+                if (match.isFinished()) {
+                    if (key == KeyEvent.VK_ENTER) {
+                        startMatch();
+                    }
+                    return;
+                }
+                if (key == KeyEvent.VK_P) {
+                    togglePause();
+                    return;
+                }
+                int input = GamePanel.inputForKey(key);
+                heldInput |= input;
+                tappedInput |= input;
+            }
+
+            @Override
+            public void keyReleased(KeyEvent e) {
+                heldInput &= ~GamePanel.inputForKey(e.getKeyCode());
+            }
+        });
+
+        // 失去焦点时收不到 keyReleased，直接视为全部松开
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                heldInput = GameEngine.INPUT_NONE;
+            }
+        });
+    }
+
+    private void togglePause() {
+        if (timer.isRunning()) {
+            timer.stop();
+        } else {
+            // 暂停的时间不计入逻辑帧
+            lastUpdateTime = System.nanoTime();
+            timer.start();
+        }
+        repaint();
+    }
+
+    //按真实经过的时间推进若干个逻辑帧（Swing 计时器在 EDT 上调用）
+
+    private void updateGame() {
+        long now = System.nanoTime();
+        tickAccumulator += now - lastUpdateTime;
+        lastUpdateTime = now;
+
+        int ticks = 0;
+        while (tickAccumulator >= GameEngine.TICK_NANOS && ticks < MAX_TICKS_PER_UPDATE && !match.isFinished()) {
+            inputs[PLAYER] = heldInput | tappedInput;
+            tappedInput = GameEngine.INPUT_NONE;
+            inputs[CPU] = ai.nextInput(match.getEngine(CPU));
+            match.step(inputs);
+            tickAccumulator -= GameEngine.TICK_NANOS;
+            ticks++;
+        }
+        if (ticks == MAX_TICKS_PER_UPDATE) {
+            tickAccumulator = 0;
+        }
+
+        if (match.isFinished()) {
+            timer.stop();
+        }
+        if (ticks > 0) {
+            repaint();
+        }
+    }
+
+    private void calculateLayout(Board board) {
+        int width = board.getWidth();
+        int height = board.getHeight();
+        if (getWidth() > 0 && getHeight() > 0) {
+            int fitWidth = (getWidth() - 2 * BOARD_GAP) / (2 * width);
+            int fitHeight = (getHeight() - HEADER_HEIGHT - 20) / height;
+            cellSize = Math.max(MIN_CELL_SIZE, Math.min(fitWidth, fitHeight));
+        }
+        int boardPixelWidth = width * cellSize;
+        int left = (getWidth() - 2 * boardPixelWidth - BOARD_GAP) / 2;
+        boardX[PLAYER] = left;
+        boardX[CPU] = left + boardPixelWidth + BOARD_GAP;
+        boardY = HEADER_HEIGHT + (getHeight() - HEADER_HEIGHT - height * cellSize) / 2;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        calculateLayout(match.getEngine(PLAYER).getBoard());
+        renderCache.validate(getGraphicsConfiguration());
+
+        for (int player = 0; player < 2; player++) {
+            drawBoard(g2d, player);
+        }
+
+        if (match.isFinished()) {
+            drawBanner(g2d, resultText, match.getWinner());
+        } else if (!timer.isRunning()) {
+            drawBanner(g2d, pausedText, 0);
+        }
+    }
+
+    private void drawBoard(Graphics2D g2d, int player) {
+        GameEngine engine = match.getEngine(player);
+        Board board = engine.getBoard();
+        int x0 = boardX[player];
+        int y0 = boardY;
+        int width = board.getWidth();
+        int height = board.getHeight();
+
+        // 名字、分数和行数
+        g2d.setColor(Color.WHITE);
+        g2d.drawGlyphVector(nameText[player].get(g2d, 0), x0, y0 - 60);
+        g2d.drawGlyphVector(scoreText[player].get(g2d, engine.getScore()), x0, y0 - 32);
+        g2d.drawGlyphVector(linesText[player].get(g2d, engine.getLines()), x0, y0 - 8);
+
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(x0, y0, width * cellSize, height * cellSize);
+        if (cellSize >= MIN_OUTLINED_CELL_SIZE) {
+            g2d.setColor(RenderCache.GRID_LINE);
+            for (int row = 0; row <= height; row++) {
+                g2d.drawLine(x0, y0 + row * cellSize, x0 + width * cellSize, y0 + row * cellSize);
+            }
+            for (int col = 0; col <= width; col++) {
+                g2d.drawLine(x0 + col * cellSize, y0, x0 + col * cellSize, y0 + height * cellSize);
+            }
+        }
+
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                if (board.isFilled(row, col)) {
+                    g2d.drawImage(renderCache.getCell(board.getColor(row, col), cellSize),
+                            x0 + col * cellSize, y0 + row * cellSize, null);
+                }
+            }
+        }
+
+        if (!engine.isClearing() && match.isAlive(player)) {
+            drawPiece(g2d, engine, x0, y0, player == PLAYER);
+        }
+
+        // 垃圾条：玩家的画在棋盘左侧，AI 的画在右侧，从底部往上长
+        int garbage = Math.min(engine.getPendingGarbage(), height);
+        int barX = player == PLAYER ? x0 - GARBAGE_BAR_WIDTH - 4 : x0 + width * cellSize + 4;
+        g2d.setColor(RenderCache.PANEL_FILL);
+        g2d.fillRect(barX, y0, GARBAGE_BAR_WIDTH, height * cellSize);
+        g2d.setColor(GARBAGE_COLOR);
+        g2d.fillRect(barX, y0 + (height - garbage) * cellSize, GARBAGE_BAR_WIDTH, garbage * cellSize);
+
+        g2d.setColor(Color.WHITE);
+        g2d.setStroke(RenderCache.GRID_BORDER_STROKE);
+        g2d.drawRect(x0, y0, width * cellSize, height * cellSize);
+
+        if (!match.isAlive(player)) {
+            g2d.setColor(RenderCache.GAME_OVER_SHADE);
+            g2d.fillRect(x0, y0, width * cellSize, height * cellSize);
+        }
+    }
+
+    // 下落中的方块；键盘玩家同时画出幽灵方块
+    private void drawPiece(Graphics2D g2d, GameEngine engine, int x0, int y0, boolean ghost) {
+        Tetromino piece = engine.getCurrentTetromino();
+        int[][] shape = piece.getShape();
+        int pieceX = engine.getCurrentX();
+        int pieceY = engine.getCurrentY();
+        int ghostY = engine.getGhostY();
+        BufferedImage cell = renderCache.getCell(piece.getColor().getRGB(), cellSize);
+
+        for (int r = 0; r < shape.length && ghost; r++) {
+            for (int c = 0; c < shape.length; c++) {
+                if (shape[r][c] != 1 || ghostY + r < 0) continue;
+                int x = x0 + (pieceX + c) * cellSize;
+                int y = y0 + (ghostY + r) * cellSize;
+                g2d.setColor(GHOST_FILL);
+                g2d.fillRect(x, y, cellSize, cellSize);
+                g2d.setColor(piece.getColor());
+                g2d.drawRect(x + 1, y + 1, cellSize - 2, cellSize - 2);
+            }
+        }
+        for (int r = 0; r < shape.length; r++) {
+            for (int c = 0; c < shape.length; c++) {
+                if (shape[r][c] == 1 && pieceY + r >= 0) {
+                    g2d.drawImage(cell, x0 + (pieceX + c) * cellSize, y0 + (pieceY + r) * cellSize, null);
+                }
+            }
+        }
+    }
+
+    // 屏幕中央的大字（比赛结果或暂停）；比赛结束时下面加一行按键提示
+    private void drawBanner(Graphics2D g2d, RenderCache.TextLine text, long value) {
+        g2d.setColor(RenderCache.GAME_OVER_SHADE);
+        g2d.fillRect(0, getHeight() / 2 - 80, getWidth(), 160);
+
+        GlyphVector glyphs = text.get(g2d, value);
+        g2d.setColor(Color.WHITE);
+        g2d.drawGlyphVector(glyphs, (getWidth() - text.getWidth()) / 2, getHeight() / 2f + text.getHeight() / 4);
+
+        if (match.isFinished()) {
+            GlyphVector hint = hintText.get(g2d, 0);
+            g2d.drawGlyphVector(hint, (getWidth() - hintText.getWidth()) / 2, getHeight() / 2f + 60);
+        }
+    }
+}
@@ -0,0 +1,413 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/*
+ VersusServer 类：对战服务器。单个线程用一个 NIO Selector 处理所有连接，可以同时托管大量比赛。
+ 客户端连上后发送 JOIN，凑够 playersPerMatch 人就开一场比赛。
+ 之后采用只传输入的 lockstep 同步：每个客户端每帧只发 1 个字节的按键状态，
+ 服务器收齐一帧所有玩家的输入后广播 FRAME，客户端和服务器各自用同样的输入推进同一个 VersusMatch。
+ 服务器的那一份是权威结果，用来判定胜负并发送 END。
+
+ 协议（大端序，每条消息第一个字节是类型）：
+   客户端 -> 服务器
+     JOIN   | 协议版本(1)
+     INPUT   | 按键状态(1)                       下一帧的输入，按帧顺序连续发送；8 位按键的任意组合都合法
+     FORFEIT |                                   认输并离开比赛（之后服务器关闭连接）
+   服务器 -> 客户端
+     START   | 比赛编号(4) | 种子(8) | 生成模式(1) | 人数(1) | 你的编号(1) | 棋盘宽(2) | 棋盘高(2)
+     FORFEIT | 玩家编号(1)                        该玩家认输或掉线，从下一帧 FRAME 开始判负（每人只发一次）
+     FRAME   | 每个玩家的按键状态(人数 x 1)        已判负的玩家为 INPUT_NONE
+     END     | 胜者编号(1)                        NO_WINNER 表示没有胜者
+
+ 用法：java VersusServer [端口] [每场人数]
+ */
+public class VersusServer implements Runnable {
+    public static final int DEFAULT_PORT = 7777;
+    static final int PROTOCOL_VERSION = 1;
+
+    static final byte MSG_JOIN = 1;
+    static final byte MSG_INPUT = 2;
+    static final byte MSG_START = 3;
+    static final byte MSG_FRAME = 4;
+    static final byte MSG_END = 5;
+    static final byte MSG_FORFEIT = 6;
+
+    static final int START_LENGTH = 1 + 4 + 8 + 1 + 1 + 1 + 2 + 2;
+    static final int NO_WINNER = 0xFF;
+
+    // 每个连接最多可以领先服务器多少帧的输入，超过则视为异常客户端
+    private static final int MAX_QUEUED_INPUTS = 256;
+    private static final int READ_BUFFER_SIZE = 512;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final int playersPerMatch;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private volatile boolean running = true;
+
+    private final List<Connection> waiting = new ArrayList<>(); // 已 JOIN、等待开局的连接
+    private final List<Match> stalled = new ArrayList<>(); // 有玩家掉线、需要重新检查能否推进的比赛
+    private int nextMatchId = 1;
+    private long finishedMatches = 0;
+
+    public VersusServer(InetSocketAddress address, int playersPerMatch) throws IOException {
+        if (playersPerMatch < 1 || playersPerMatch > 254) {
+            throw new IllegalArgumentException("playersPerMatch: " + playersPerMatch);
+        }
+        this.playersPerMatch = playersPerMatch;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(address);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    //在本机回环地址的随机端口上启动服务器（后台守护线程），用于测试和本地对战
+
+    public static VersusServer startLoopback(int playersPerMatch) throws IOException {
+        VersusServer server = new VersusServer(new InetSocketAddress("127.0.0.1", 0), playersPerMatch);
+        Thread thread = new Thread(server, "tetris-versus-server");
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    public long getFinishedMatches() {
+        return finishedMatches;
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isReadable()) {
+                        read(connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(connection);
+                    }
+                }
+
+                // 掉线玩家不再提供输入，其余玩家可能正等着这一帧
+                while (!stalled.isEmpty()) {
+                    advance(stalled.remove(stalled.size() - 1));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Versus server stopped: " + e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true); // 每帧只有几个字节，不能等 Nagle 合并
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void read(Connection connection) {
+        ByteBuffer in = connection.readBuffer;
+        try {
+            if (connection.channel.read(in) < 0) {
+                disconnect(connection);
+                return;
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+            return;
+        }
+
+        in.flip();
+        while (in.hasRemaining()) {
+            int type = in.get(in.position());
+            if (type == MSG_JOIN) {
+                if (in.remaining() < 2) break;
+                in.get();
+                int version = in.get();
+                if (version != PROTOCOL_VERSION || connection.joined) {
+                    disconnect(connection);
+                    return;
+                }
+                connection.joined = true;
+                waiting.add(connection);
+                if (waiting.size() >= playersPerMatch) {
+                    startMatch();
+                }
+            } else if (type == MSG_INPUT) {
+                if (in.remaining() < 2) break;
+                in.get();
+                int input = in.get() & 0xFF;
+                if (connection.match == null || !connection.queueInput(input)) {
+                    disconnect(connection);
+                    return;
+                }
+            } else if (type == MSG_FORFEIT) {
+                // 认输和掉线的处理相同：下一帧判负，其余玩家继续
+                disconnect(connection);
+                return;
+            } else {
+                disconnect(connection);
+                return;
+            }
+        }
+        in.compact();
+
+        if (connection.match != null) {
+            advance(connection.match);
+        }
+    }
+
+    // 用等待队列最前面的 playersPerMatch 个连接开一场比赛
+    private void startMatch() {
+        long seed = System.nanoTime() ^ ((long) nextMatchId << 32);
+        int width = GameEngine.DEFAULT_WIDTH;
+        int height = GameEngine.DEFAULT_HEIGHT;
+        int mode = PieceGenerator.MODE_SEVEN_BAG;
+
+        Match match = new Match(nextMatchId++, playersPerMatch, seed, mode, width, height);
+        for (int i = 0; i < playersPerMatch; i++) {
+            Connection connection = waiting.remove(0);
+            connection.match = match;
+            match.players[i] = connection;
+
+            ByteBuffer out = connection.writeBuffer;
+            out.put(MSG_START).putInt(match.id).putLong(seed).put((byte) mode)
+                    .put((byte) playersPerMatch).put((byte) i).putShort((short) width).putShort((short) height);
+            flush(connection);
+        }
+    }
+
+    // 只要每个在线玩家都有下一帧的输入，就推进一帧并广播
+    private void advance(Match match) {
+        while (!match.finished && match.isFrameReady()) {
+            byte[] frame = match.frame;
+            for (int i = 0; i < match.players.length; i++) {
+                Connection player = match.players[i];
+                if (player.disconnected) {
+                    if (!match.forfeited[i]) {
+                        // 第一次推进到这名玩家离开后的帧：先通知其他玩家，再发这一帧
+                        match.forfeited[i] = true;
+                        match.simulation.forfeit(i);
+                        for (Connection other : match.players) {
+                            if (other.disconnected || !reserve(other, 2)) continue;
+                            other.writeBuffer.put(MSG_FORFEIT).put((byte) i);
+                        }
+                    }
+                    match.inputs[i] = GameEngine.INPUT_NONE;
+                    frame[i] = (byte) GameEngine.INPUT_NONE;
+                } else {
+                    match.inputs[i] = player.pollInput();
+                    frame[i] = (byte) match.inputs[i];
+                }
+            }
+            match.simulation.step(match.inputs);
+
+            for (Connection player : match.players) {
+                if (player.disconnected || !reserve(player, 1 + frame.length)) continue;
+                player.writeBuffer.put(MSG_FRAME).put(frame);
+            }
+
+            if (match.simulation.isFinished()) {
+                finishMatch(match);
+            }
+            for (Connection player : match.players) {
+                if (!player.disconnected) {
+                    flush(player);
+                }
+            }
+        }
+    }
+
+    private void finishMatch(Match match) {
+        match.finished = true;
+        finishedMatches++;
+        int winner = match.simulation.getWinner();
+        for (Connection player : match.players) {
+            if (player.disconnected || !reserve(player, 2)) continue;
+            player.writeBuffer.put(MSG_END).put((byte) (winner < 0 ? NO_WINNER : winner));
+            player.closeAfterFlush = true;
+        }
+    }
+
+    // 确保写缓冲区还能放下 bytes 字节；客户端长期不读取导致缓冲区写满时断开它（下一帧判负）
+    private boolean reserve(Connection connection, int bytes) {
+        if (connection.writeBuffer.remaining() >= bytes) return true;
+        close(connection);
+        return false;
+    }
+
+    // 尽量把写缓冲区发出去，发不完就关注 OP_WRITE 等下次可写；写入失败视为掉线
+    private void flush(Connection connection) {
+        ByteBuffer out = connection.writeBuffer;
+        out.flip();
+        try {
+            connection.channel.write(out);
+        } catch (IOException e) {
+            out.clear();
+            disconnect(connection);
+            return;
+        }
+        boolean pending = out.hasRemaining();
+        out.compact();
+
+        if (pending) {
+            connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else if (connection.closeAfterFlush) {
+            close(connection);
+        } else {
+            connection.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    // 连接断开：还没开局的从等待队列移除
+    private void disconnect(Connection connection) {
+        close(connection);
+        waiting.remove(connection);
+    }
+
+    // 关闭连接；比赛中的玩家在下一帧判负，其余玩家继续（本轮事件处理完后推进）
+    private void close(Connection connection) {
+        if (connection.disconnected) return;
+        connection.disconnected = true;
+        if (connection.match != null && !connection.match.finished) {
+            stalled.add(connection.match);
+        }
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // 忽略
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        VersusServer server = new VersusServer(new InetSocketAddress(port), players);
+        System.out.printf("Versus server listening on port %d (%d players per match)%n", server.getPort(), players);
+        server.run();
+    }
+
+    /*
+     一个客户端连接。输入队列是一个 int 环形数组，由 Selector 线程独占访问。
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        SelectionKey key;
+        final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+        boolean joined = false;
+        boolean disconnected = false;
+        boolean closeAfterFlush = false;
+        Match match;
+
+        private final int[] inputs = new int[MAX_QUEUED_INPUTS];
+        private int inputHead = 0;
+        private int inputCount = 0;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        boolean queueInput(int input) {
+            if (inputCount == MAX_QUEUED_INPUTS) return false;
+            inputs[(inputHead + inputCount) % MAX_QUEUED_INPUTS] = input;
+            inputCount++;
+            return true;
+        }
+
+        boolean hasInput() {
+            return inputCount > 0;
+        }
+
+        int pollInput() {
+            int input = inputs[inputHead];
+            inputHead = (inputHead + 1) % MAX_QUEUED_INPUTS;
+            inputCount--;
+            return input;
+        }
+    }
+
+    /*
+     一场比赛：玩家连接和服务器端的权威模拟。
+     */
+    private static final class Match {
+        final int id;
+        final Connection[] players;
+        final VersusMatch simulation;
+        final int[] inputs;
+        final byte[] frame;
+        final boolean[] forfeited; // 已经通知过其他玩家判负的玩家
+        boolean finished = false;
+
+        Match(int id, int playerCount, long seed, int mode, int width, int height) {
+            this.id = id;
+            this.players = new Connection[playerCount];
+            this.simulation = new VersusMatch(playerCount, seed, mode, width, height);
+            this.inputs = new int[playerCount];
+            this.frame = new byte[playerCount];
+            this.forfeited = new boolean[playerCount];
+        }
+
+        // 所有在线玩家都有输入时可以推进；全部掉线时不再推进
+        boolean isFrameReady() {
+            boolean anyConnected = false;
+            for (Connection player : players) {
+                if (player.disconnected) continue;
+                anyConnected = true;
+                if (!player.hasInput()) return false;
+            }
+            return anyConnected;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ XorShiftRandom 类：轻量、可拆分的伪随机数生成器 (xorshift64*)。
+ 每局游戏持有自己的实例，不与其他游戏共享状态，因此不存在线程竞争，
+ 只要种子相同，生成的序列就完全相同，可用于回放验证和基准测试。
+ */
+public class XorShiftRandom {
+    private long state;
+
+    public XorShiftRandom(long seed) {
+        setSeed(seed);
+    }
+
+    // 用 SplitMix64 打散种子，保证相近的种子（如 1, 2, 3）也能得到互不相关的序列
+    public void setSeed(long seed) {
+        long z = mix(seed + 0x9E3779B97F4A7C15L);
+        state = z != 0 ? z : 0x9E3779B97F4A7C15L; // xorshift 的状态不能为 0
+    }
+
+    public long nextLong() {
+        long x = state;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        state = x;
+        return x * 0x2545F4914F6CDD1DL;
+    }
+
+    // 返回 [0, bound) 范围内的整数（Lemire 的乘法取高位法，不需要除法）
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        }
+        long r = (nextLong() >>> 32) * bound;
+        return (int) (r >>> 32);
+    }
+
+    //拆分出一个新的独立生成器，例如为每个并发游戏派生各自的种子
+
+    public XorShiftRandom split() {
+        return new XorShiftRandom(mix(nextLong()));
+    }
+
+    // 内部状态的读取与恢复（用于存档）
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state != 0 ? state : 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}